@@ -0,0 +1,323 @@
+package com.lurch.bake;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Command line tool baking a resource tree into a single pack.
+ *
+ * Images under texture/ are decoded once here and stored as RGBA8 pixels with
+ * a box-filtered mip chain, so the engine uploads them straight from the mapped
+ * pack without PNG inflation, STB decoding or glGenerateMipmap. DDS and KTX2
+ * files are already GPU-ready and are stored as is, as are images ImageIO cannot
+ * read, which the engine decodes from memory. Sources under shader/ are stored
+ * as UTF-8 text.
+ *
+ * Usage: AssetBaker &lt;resource-dir&gt; &lt;output.pak&gt; [--no-mips]
+ */
+public final class AssetBaker
+{
+    /**
+     * GL_RGBA8, the internal format of baked pixels.
+     */
+    private static final int GL_RGBA8 = 0x8058;
+
+
+    private AssetBaker()
+    {
+    }
+
+
+    /**
+     * Runs the baker.
+     *
+     * @param args resource directory, output file and options
+     * @throws IOException if a resource cannot be read or the pack cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("--no-mips")))
+        {
+            System.err.println("Usage: AssetBaker <resource-dir> <output.pak> [--no-mips]");
+            System.exit(1);
+        }
+
+        final long start = System.nanoTime();
+        final Path root = Path.of(args[0]);
+        final boolean mips = args.length < 3;
+
+        if (!Files.isDirectory(root.resolve("texture")) && !Files.isDirectory(root.resolve("shader")))
+        {
+            System.err.println("No texture/ or shader/ directory under " + root.toAbsolutePath());
+            System.exit(1);
+        }
+
+        PackWriter pack = new PackWriter();
+        int textures = bakeTextures(root.resolve("texture"), pack, mips);
+        int shaders = bakeShaders(root.resolve("shader"), pack);
+        long size = pack.write(Path.of(args[1]));
+
+        System.out.printf("Baked %d textures and %d shaders into %s (%d bytes) in %d ms%n",
+                          textures, shaders, args[1], size, (System.nanoTime() - start) / 1_000_000);
+    }
+
+
+    // --- Textures --- //
+
+
+    /**
+     * Decodes every image under a directory and adds it to the pack.
+     * Images are decoded in parallel; the pack sorts entries so the output is stable.
+     *
+     * @return the number of textures added
+     */
+    private static int bakeTextures(Path directory, PackWriter pack, boolean mips) throws IOException
+    {
+        List<Path> files = list(directory);
+
+        List<Baked> baked = files.parallelStream().map(file ->
+        {
+            try
+            {
+                return bakeTexture(directory, file, mips);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to bake " + file, e);
+            }
+        }).collect(Collectors.toList());
+
+        for (Baked texture : baked)
+        {
+            pack.add(texture.name, texture.kind, texture.hash, texture.width, texture.height, texture.levels,
+                     texture.format, texture.data);
+        }
+
+        return baked.size();
+    }
+
+
+    /**
+     * Bakes one texture file.
+     */
+    private static Baked bakeTexture(Path directory, Path file, boolean mips) throws IOException
+    {
+        String name = "texture/" + relativeName(directory, file);
+        byte[] bytes = Files.readAllBytes(file);
+        long hash = hash(bytes);
+
+
+        /* Block-compressed containers are uploaded as they are */
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".dds") || lower.endsWith(".ktx2"))
+        {
+            return new Baked(name, PackWriter.RAW, hash, 0, 0, 0, 0, bytes);
+        }
+
+
+        /* Decode to RGBA8, rows top to bottom like STB */
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null)
+        {
+            /* Formats ImageIO cannot read (e.g. TGA) are decoded by STB at runtime */
+            System.err.println("Storing undecoded: " + file);
+            return new Baked(name, PackWriter.RAW, hash, 0, 0, 0, 0, bytes);
+        }
+
+        int width = image.getWidth(), height = image.getHeight();
+        byte[] level = toRGBA(image);
+
+
+        /* Append the mip chain down to 1x1 */
+        int levels = 1;
+        int size = level.length;
+        byte[][] chain = new byte[32][];
+        chain[0] = level;
+
+        int w = width, h = height;
+        while (mips && (w > 1 || h > 1))
+        {
+            level = downsample(level, w, h);
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+
+            chain[levels++] = level;
+            size += level.length;
+        }
+
+        byte[] data = new byte[size];
+        for (int i = 0, offset = 0; i < levels; offset += chain[i].length, i++)
+        {
+            System.arraycopy(chain[i], 0, data, offset, chain[i].length);
+        }
+
+        return new Baked(name, PackWriter.TEXTURE, hash, width, height, levels, GL_RGBA8, data);
+    }
+
+
+    /**
+     * Converts an image to tightly packed, non-premultiplied RGBA8.
+     */
+    private static byte[] toRGBA(BufferedImage image)
+    {
+        int width = image.getWidth(), height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        byte[] rgba = new byte[width * height * 4];
+
+        for (int i = 0; i < argb.length; i++)
+        {
+            int pixel = argb[i];
+            rgba[i * 4]     = (byte) (pixel >> 16);
+            rgba[i * 4 + 1] = (byte) (pixel >> 8);
+            rgba[i * 4 + 2] = (byte) pixel;
+            rgba[i * 4 + 3] = (byte) (pixel >>> 24);
+        }
+
+        return rgba;
+    }
+
+
+    /**
+     * Halves an RGBA8 level with a 2x2 box filter.
+     * Odd edges are clamped, matching what glGenerateMipmap produces for RGBA8.
+     */
+    private static byte[] downsample(byte[] source, int width, int height)
+    {
+        int w = Math.max(1, width / 2), h = Math.max(1, height / 2);
+        byte[] target = new byte[w * h * 4];
+
+        for (int y = 0; y < h; y++)
+        {
+            int y0 = Math.min(y * 2, height - 1), y1 = Math.min(y * 2 + 1, height - 1);
+
+            for (int x = 0; x < w; x++)
+            {
+                int x0 = Math.min(x * 2, width - 1), x1 = Math.min(x * 2 + 1, width - 1);
+
+                for (int c = 0; c < 4; c++)
+                {
+                    int sum = (source[(y0 * width + x0) * 4 + c] & 0xFF) + (source[(y0 * width + x1) * 4 + c] & 0xFF)
+                            + (source[(y1 * width + x0) * 4 + c] & 0xFF) + (source[(y1 * width + x1) * 4 + c] & 0xFF);
+
+                    target[(y * w + x) * 4 + c] = (byte) ((sum + 2) >> 2);
+                }
+            }
+        }
+
+        return target;
+    }
+
+
+    // --- Shaders --- //
+
+
+    /**
+     * Adds every shader source under a directory to the pack.
+     *
+     * @return the number of shaders added
+     */
+    private static int bakeShaders(Path directory, PackWriter pack) throws IOException
+    {
+        List<Path> files = list(directory);
+
+        for (Path file : files)
+        {
+            byte[] source = Files.readAllBytes(file);
+            pack.add("shader/" + relativeName(directory, file), PackWriter.SHADER, hash(source), 0, 0, 0, 0, source);
+        }
+
+        return files.size();
+    }
+
+
+    // --- Helpers --- //
+
+
+    /**
+     * Lists the regular files under a directory, or none if it does not exist.
+     */
+    private static List<Path> list(Path directory) throws IOException
+    {
+        if (!Files.isDirectory(directory))
+        {
+            return List.of();
+        }
+
+        try (Stream<Path> walk = Files.walk(directory))
+        {
+            return walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+
+    /**
+     * Returns a file's path relative to a directory, '/' separated.
+     */
+    private static String relativeName(Path directory, Path file)
+    {
+        return directory.relativize(file).toString().replace('\\', '/');
+    }
+
+
+    /**
+     * Hashes content with SHA-256, truncated to 64 bits.
+     */
+    private static long hash(byte[] bytes)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+
+            long hash = 0;
+            for (int i = 0; i < 8; i++)
+            {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+
+            return hash;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+
+    /**
+     * A baked texture waiting to be added to the pack.
+     */
+    private static final class Baked
+    {
+        private final String name;
+        private final byte kind;
+        private final long hash;
+        private final int width;
+        private final int height;
+        private final int levels;
+        private final int format;
+        private final byte[] data;
+
+        private Baked(String name, byte kind, long hash, int width, int height, int levels, int format, byte[] data)
+        {
+            this.name = name;
+            this.kind = kind;
+            this.hash = hash;
+            this.width = width;
+            this.height = height;
+            this.levels = levels;
+            this.format = format;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.lurch.bake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes a Lurch resource pack.
+ *
+ * Layout, little endian:
+ * <pre>
+ * header  int magic ("LPAK"), int version, int entry count
+ * index   per entry: short name length, UTF-8 name, byte kind,
+ *         long offset, long length, long hash,
+ *         int width, int height, int levels, int format
+ * data    entry payloads, each aligned to {@link #ALIGNMENT} bytes
+ * </pre>
+ *
+ * The layout must match com.lurch.resource.ResourcePack in the engine.
+ */
+final class PackWriter
+{
+    /**
+     * Pack magic number, "LPAK" in little endian.
+     */
+    static final int MAGIC = 0x4B41504C;
+
+
+    /**
+     * Pack format version.
+     */
+    static final int VERSION = 1;
+
+
+    /**
+     * Entry kind: file stored as is.
+     */
+    static final byte RAW = 0;
+
+
+    /**
+     * Entry kind: RGBA8 pixels, mip levels back to back, base level first.
+     */
+    static final byte TEXTURE = 1;
+
+
+    /**
+     * Entry kind: UTF-8 shader source.
+     */
+    static final byte SHADER = 2;
+
+
+    /**
+     * Alignment of entry payloads in bytes.
+     */
+    static final int ALIGNMENT = 16;
+
+
+    /**
+     * Entries added so far.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+
+    /**
+     * Adds an entry to the pack.
+     *
+     * @param name   the entry name, '/' separated
+     * @param kind   the entry kind
+     * @param hash   the content hash of the source file
+     * @param width  the image width, 0 for non-textures
+     * @param height the image height, 0 for non-textures
+     * @param levels the number of mip levels, 0 for non-textures
+     * @param format the GL internal format of the pixels, 0 for non-textures
+     * @param data   the payload
+     */
+    void add(String name, byte kind, long hash, int width, int height, int levels, int format, byte[] data)
+    {
+        if (name.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Entry name too long: " + name);
+        }
+
+        entries.add(new Entry(name, kind, hash, width, height, levels, format, data));
+    }
+
+
+    /**
+     * Writes the pack, replacing any existing file.
+     * Entries are sorted by name so identical inputs give identical packs.
+     *
+     * @param path the output file
+     * @return the size of the pack in bytes
+     * @throws IOException if the file cannot be written
+     */
+    long write(Path path) throws IOException
+    {
+        entries.sort(Comparator.comparing(entry -> entry.name));
+
+
+        /* Size the index to find where the data starts */
+        long indexEnd = 12;
+        for (Entry entry : entries)
+        {
+            indexEnd += 2 + entry.nameBytes.length + 1 + 8 * 3 + 4 * 4;
+        }
+
+
+        /* Assign aligned payload offsets */
+        long offset = align(indexEnd);
+        for (Entry entry : entries)
+        {
+            entry.offset = offset;
+            offset = align(offset + entry.data.length);
+        }
+
+
+        /* Header and index */
+        ByteBuffer index = ByteBuffer.allocate((int) indexEnd).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+
+        for (Entry entry : entries)
+        {
+            index.putShort((short) entry.nameBytes.length).put(entry.nameBytes).put(entry.kind);
+            index.putLong(entry.offset).putLong(entry.data.length).putLong(entry.hash);
+            index.putInt(entry.width).putInt(entry.height).putInt(entry.levels).putInt(entry.format);
+        }
+
+        index.flip();
+
+
+        /* Payloads, gaps between them are left zeroed */
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            writeFully(channel, index, 0);
+
+            for (Entry entry : entries)
+            {
+                writeFully(channel, ByteBuffer.wrap(entry.data), entry.offset);
+            }
+
+            return channel.size();
+        }
+    }
+
+
+    /**
+     * Writes a whole buffer at a position.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+
+
+    /**
+     * Rounds an offset up to the payload alignment.
+     */
+    private static long align(long offset)
+    {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+
+    /**
+     * A pack entry and its payload.
+     */
+    private static final class Entry
+    {
+        private final String name;
+        private final byte[] nameBytes;
+        private final byte kind;
+        private final long hash;
+        private final int width;
+        private final int height;
+        private final int levels;
+        private final int format;
+        private final byte[] data;
+        private long offset;
+
+        private Entry(String name, byte kind, long hash, int width, int height, int levels, int format, byte[] data)
+        {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.kind = kind;
+            this.hash = hash;
+            this.width = width;
+            this.height = height;
+            this.levels = levels;
+            this.format = format;
+            this.data = data;
+        }
+    }
+}
@@ -1,20 +1,45 @@
 package com.lurch.core;
 
+import java.util.concurrent.locks.LockSupport;
+
 public class Engine 
 {
     protected final Window window;
     private final Timer timer;
+    private final FrameLimiter limiter = new FrameLimiter();
+    private final JobSystem jobs = new JobSystem();
+
+    private volatile boolean running = true;
+
+    /**
+     * Frame rate held in {@link PresentMode#TARGET_FPS} mode.
+     */
+    private float targetFPS = 60f;
 
-    private boolean running = true;
+    /**
+     * Whether update() runs on its own thread, see {@link #setPipelined(boolean)}.
+     */
+    private boolean pipelined;
 
-    private final float deltaTime;
+    /**
+     * Time of the last published update, read by the render thread for its alpha.
+     */
+    private volatile long publishTime;
+
+    /**
+     * Update interval in nanoseconds as of the last tick, published for the render thread.
+     */
+    private volatile long publishInterval;
+
+    /**
+     * Error that stopped the update thread, rethrown on the main thread.
+     */
+    private volatile RuntimeException updateFailure;
 
     public Engine(int width, int height, String title) 
     {
         window = new Window(width, height, title);
         timer = new Timer();
-
-        deltaTime = 1f / timer.getUPS();
     }
 
     public Engine(String title) 
@@ -25,7 +50,16 @@ public class Engine
     public void run()
     {
         init();
-        loop();
+
+        if (pipelined)
+        {
+            pipelinedLoop();
+        }
+        else
+        {
+            loop();
+        }
+
         free();
     }
 
@@ -38,25 +72,149 @@ public class Engine
     {
         while(running && !window.shouldClose())
         {
-            timer.update();
+            tick();
+
+            render(timer.getAlpha());
+
+            window.refresh();
+            limiter.sync();
+        }
+    }
+
+    /**
+     * Runs the update steps that are due.
+     *
+     * @return the number of steps run
+     */
+    private int tick()
+    {
+        timer.update();
+
+        if (timer.isHitch())
+        {
+            hitch(timer.getDeltaTime());
+        }
+
+        /* Read every frame, setUPS and adaptive mode change the step */
+        float deltaTime = timer.getUpdateDelta();
+        long start = System.nanoTime();
 
-            int updates = timer.getAccumulatedUpdates();
-            for(int i = 0; i < updates; i++)
+        jobs.beginFrame();
+
+        int updates = timer.getAccumulatedUpdates();
+        for(int i = 0; i < updates; i++)
+        {
+            update(deltaTime);
+        }
+
+        /* Jobs started by update() finish before anything renders or publishes */
+        jobs.waitAll();
+
+        timer.consume();
+        timer.recordUpdateTime(System.nanoTime() - start);
+
+        return updates;
+    }
+
+    /**
+     * Main thread side of the pipelined mode: renders and polls events while
+     * the update thread simulates, so both overlap instead of taking turns.
+     */
+    private void pipelinedLoop()
+    {
+        publishTime = System.nanoTime();
+        publishInterval = timer.getUpdateInterval();
+
+        Thread updater = new Thread(this::updateLoop, "lurch-update");
+        updater.start();
+
+        try
+        {
+            while(running && !window.shouldClose())
             {
-                update(deltaTime);
+                /* Progress since the last published step, the snapshot's own alpha */
+                float alpha = (System.nanoTime() - publishTime) / (float) publishInterval;
+
+                render(Math.min(alpha, 1f));
+
+                window.refresh();
+                limiter.sync();
             }
+        }
+        finally
+        {
+            running = false;
+            LockSupport.unpark(updater);
+
+            try
+            {
+                updater.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-            timer.consume();
+        if (updateFailure != null)
+        {
+            throw updateFailure;
+        }
+    }
 
-            render();
+    /**
+     * Update thread body: runs due steps, publishes them and sleeps until the next step.
+     */
+    private void updateLoop()
+    {
+        try
+        {
+            while(running)
+            {
+                if (tick() > 0)
+                {
+                    /* Timing first: a fresh snapshot must never be read with the old time */
+                    publishInterval = timer.getUpdateInterval();
+                    publishTime = System.nanoTime();
+                    publish();
+                }
 
-            window.refresh();
+                long wait = timer.getUpdateInterval() - timer.getAccumulatedTime();
+                if (wait > 0)
+                {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            updateFailure = e;
+            running = false;
         }
     }
 
+    /**
+     * Runs update() on its own thread while the main thread renders.
+     * Must be called before {@link #run()}.
+     *
+     * In pipelined mode update() and publish() run on the update thread, and
+     * render(), input callbacks and all GL calls stay on the main thread, which
+     * GLFW and GL require. Update code must not touch GL or the window, and
+     * render code must only read state published through a {@link SnapshotBuffer}.
+     * Snapshots must hold copies, never job arena memory, which the next
+     * frame reuses while render may still be reading.
+     *
+     * @param enabled whether to run updates on their own thread
+     */
+    protected void setPipelined(boolean enabled)
+    {
+        pipelined = enabled;
+    }
+
     protected void free() 
     {
         timer.stop();
+        jobs.delete();
         window.delete();
     }
 
@@ -66,6 +224,77 @@ public class Engine
     }
 
 
+    /**
+     * Sets how frames are presented. Call from init() or later on the main thread.
+     * For {@link PresentMode#TARGET_FPS} the frame rate comes from {@link #setTargetFPS(float)}.
+     *
+     * @param mode the present mode
+     */
+    protected void setPresentMode(PresentMode mode)
+    {
+        mode = window.setPresentMode(mode);
+        limiter.setTargetFPS(mode == PresentMode.TARGET_FPS ? targetFPS : 0);
+    }
+
+
+    /**
+     * Sets the frame rate held in {@link PresentMode#TARGET_FPS} mode,
+     * e.g. 30 for previews that should use little CPU.
+     *
+     * @param fps the target frames per second
+     */
+    protected void setTargetFPS(float fps)
+    {
+        if (fps <= 0)
+        {
+            throw new IllegalArgumentException("Invalid target FPS: " + fps);
+        }
+
+        targetFPS = fps;
+
+        if (window.getPresentMode() == PresentMode.TARGET_FPS)
+        {
+            limiter.setTargetFPS(fps);
+        }
+    }
+
+
+    /**
+     * Called on the update thread in pipelined mode after each frame's update steps.
+     * Copy the state render needs into a {@link SnapshotBuffer} and publish it;
+     * render then interpolates from the snapshot with the alpha it receives.
+     */
+    protected void publish() 
+    {
+    }
+
+
+    /**
+     * Called after a frame that took longer than the timer's hitch threshold.
+     * In pipelined mode it runs on the update thread.
+     * Update steps beyond {@link Timer#setMaxUpdates(int)} have already been dropped.
+     *
+     * @param frameTime the length of the frame in seconds
+     */
+    protected void hitch(float frameTime) 
+    {
+    }
+
+
+    /**
+     * Renders a frame between the last two update steps.
+     * Interpolate from the previous to the current state by alpha
+     * (see {@link InterpolatedTransform}) to keep motion smooth when the
+     * frame rate is higher than the update rate. Defaults to {@link #render()}.
+     *
+     * @param alpha progress from the previous to the current update, in [0, 1)
+     */
+    protected void render(float alpha) 
+    {
+        render();
+    }
+
+
     protected void render() 
     {
     }
@@ -73,4 +302,16 @@ public class Engine
     protected Window getWindow() {
         return window;
     }
+
+    protected Timer getTimer() {
+        return timer;
+    }
+
+    protected FrameLimiter getFrameLimiter() {
+        return limiter;
+    }
+
+    protected JobSystem getJobs() {
+        return jobs;
+    }
 }
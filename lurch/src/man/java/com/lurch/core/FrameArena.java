@@ -0,0 +1,138 @@
+package com.lurch.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Off-heap bump allocator for data that lives for a single frame, e.g. the
+ * per-entity results of a job. Allocation is one atomic add, safe from any
+ * thread, and nothing is freed individually: {@link #reset()} releases
+ * everything at once at the start of the next frame. Results that outlive the
+ * frame's update steps, e.g. state published for render, must be copied out.
+ */
+public class FrameArena
+{
+    /**
+     * Alignment of every allocation, enough for any vector type.
+     */
+    private static final int ALIGNMENT = 16;
+
+
+    /**
+     * Backing memory.
+     */
+    private final ByteBuffer memory;
+
+
+    /**
+     * Offset of the next allocation.
+     */
+    private final AtomicInteger top = new AtomicInteger();
+
+
+    /**
+     * Creates an arena.
+     *
+     * @param capacity the size of the arena in bytes
+     */
+    public FrameArena(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Invalid arena capacity");
+        }
+
+        memory = MemoryUtil.memAlloc(capacity);
+    }
+
+
+    /**
+     * Allocates memory valid until the next {@link #reset()}. The contents are undefined.
+     *
+     * @param bytes the size in bytes
+     * @return a native-order buffer over the allocation
+     * @throws IllegalStateException if the arena is exhausted
+     */
+    public ByteBuffer allocate(int bytes)
+    {
+        if (bytes < 0)
+        {
+            throw new IllegalArgumentException("Invalid allocation size: " + bytes);
+        }
+
+        int size = (bytes + ALIGNMENT - 1) & -ALIGNMENT;
+        int offset = top.getAndAdd(size);
+
+        if (offset > memory.capacity() - size)
+        {
+            throw new IllegalStateException("Frame arena exhausted, " + memory.capacity() + " bytes");
+        }
+
+        return memory.slice(offset, bytes).order(ByteOrder.nativeOrder());
+    }
+
+
+    /**
+     * Allocates floats valid until the next {@link #reset()}.
+     *
+     * @param count the number of floats
+     * @return a buffer over the allocation
+     */
+    public FloatBuffer allocateFloats(int count)
+    {
+        return allocate(count * Float.BYTES).asFloatBuffer();
+    }
+
+
+    /**
+     * Allocates ints valid until the next {@link #reset()}.
+     *
+     * @param count the number of ints
+     * @return a buffer over the allocation
+     */
+    public IntBuffer allocateInts(int count)
+    {
+        return allocate(count * Integer.BYTES).asIntBuffer();
+    }
+
+
+    /**
+     * Releases every allocation. No job may still use arena memory.
+     */
+    public void reset()
+    {
+        top.set(0);
+    }
+
+
+    /**
+     * @return The bytes allocated since the last reset
+     */
+    public int getUsed()
+    {
+        return Math.min(top.get(), memory.capacity());
+    }
+
+
+    /**
+     * @return The size of the arena in bytes
+     */
+    public int getCapacity()
+    {
+        return memory.capacity();
+    }
+
+
+    /**
+     * Frees the backing memory.
+     */
+    public void delete()
+    {
+        MemoryUtil.memFree(memory);
+    }
+}
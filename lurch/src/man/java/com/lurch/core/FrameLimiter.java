@@ -0,0 +1,264 @@
+package com.lurch.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces frames to a target rate and measures how evenly they arrive.
+ *
+ * {@link #sync()} is called once per frame after the buffers are swapped. With a
+ * target set it parks the thread for most of the remaining frame time and spins
+ * only for the last stretch, where a park would oversleep. The spin window follows
+ * the measured oversleep of this machine, so the limiter stays accurate while the
+ * CPU sleeps for nearly the whole wait. Without a target it only records frame times.
+ *
+ * Frame time statistics cover the frames since the last {@link #resetStats()}.
+ */
+public class FrameLimiter
+{
+    /**
+     * Smallest spin window, in nanoseconds.
+     */
+    private static final long MIN_SPIN = 200_000L;
+
+
+    /**
+     * Largest spin window, in nanoseconds.
+     */
+    private static final long MAX_SPIN = 4_000_000L;
+
+
+    /**
+     * Target frame duration in nanoseconds, 0 when unlimited.
+     */
+    private long frameInterval;
+
+
+    /**
+     * When the next frame is due, 0 before the first frame.
+     */
+    private long deadline;
+
+
+    /**
+     * Remaining time below which the limiter spins instead of parking.
+     */
+    private long spinWindow = 1_000_000L;
+
+
+    /**
+     * Start of the current frame.
+     */
+    private long frameStart;
+
+
+    /**
+     * Frames measured.
+     */
+    private long frames;
+
+
+    /**
+     * Running mean of the frame time in nanoseconds.
+     */
+    private double mean;
+
+
+    /**
+     * Running sum of squared deviations from the mean (Welford).
+     */
+    private double deviations;
+
+
+    /**
+     * Shortest frame in nanoseconds.
+     */
+    private long shortest = Long.MAX_VALUE;
+
+
+    /**
+     * Longest frame in nanoseconds.
+     */
+    private long longest;
+
+
+    /**
+     * Creates a limiter without a target, which only measures frame times.
+     */
+    public FrameLimiter()
+    {
+        this(0);
+    }
+
+
+    /**
+     * Creates a limiter holding frames to a target rate.
+     *
+     * @param fps the target frames per second, 0 for no limit
+     */
+    public FrameLimiter(float fps)
+    {
+        setTargetFPS(fps);
+    }
+
+
+    /**
+     * Sets the target frame rate.
+     *
+     * @param fps the target frames per second, 0 for no limit
+     */
+    public void setTargetFPS(float fps)
+    {
+        if (fps < 0)
+        {
+            throw new IllegalArgumentException("Invalid target FPS: " + fps);
+        }
+
+        frameInterval = fps > 0 ? (long) (1_000_000_000L / fps) : 0;
+        deadline = 0;
+    }
+
+
+    /**
+     * Waits until the next frame is due and records the frame time.
+     */
+    public void sync()
+    {
+        long now = System.nanoTime();
+
+        if (frameInterval > 0)
+        {
+            /* A frame that ran long resets the schedule instead of rushing later ones */
+            if (deadline == 0 || now - deadline > frameInterval)
+            {
+                deadline = now;
+            }
+            else
+            {
+                now = waitUntil(deadline);
+            }
+
+            deadline += frameInterval;
+        }
+
+        if (frameStart != 0)
+        {
+            record(now - frameStart);
+        }
+
+        frameStart = now;
+    }
+
+
+    /**
+     * Parks, then spins until a time.
+     *
+     * @return the time the wait ended
+     */
+    private long waitUntil(long time)
+    {
+        long now = System.nanoTime();
+
+        while (time - now > spinWindow)
+        {
+            long request = time - now - spinWindow;
+            LockSupport.parkNanos(request);
+
+            long woke = System.nanoTime();
+            adapt(woke - now - request);
+            now = woke;
+        }
+
+        while (time - now > 0)
+        {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+
+        return now;
+    }
+
+
+    /**
+     * Moves the spin window towards twice the observed oversleep of a park.
+     */
+    private void adapt(long oversleep)
+    {
+        long wanted = Math.max(MIN_SPIN, Math.min(MAX_SPIN, oversleep * 2));
+
+        spinWindow = wanted > spinWindow ? wanted : spinWindow + (wanted - spinWindow) / 16;
+    }
+
+
+    /**
+     * Adds one frame time to the statistics.
+     */
+    private void record(long nanos)
+    {
+        frames++;
+
+        double delta = nanos - mean;
+        mean += delta / frames;
+        deviations += delta * (nanos - mean);
+
+        shortest = Math.min(shortest, nanos);
+        longest = Math.max(longest, nanos);
+    }
+
+
+    /**
+     * @return The mean frame time in seconds
+     */
+    public float getMeanFrameTime()
+    {
+        return (float) (mean / 1_000_000_000.0);
+    }
+
+
+    /**
+     * @return The standard deviation of the frame time in seconds, the frame jitter
+     */
+    public float getJitter()
+    {
+        return frames > 1 ? (float) (Math.sqrt(deviations / (frames - 1)) / 1_000_000_000.0) : 0f;
+    }
+
+
+    /**
+     * @return The shortest frame time in seconds
+     */
+    public float getShortestFrame()
+    {
+        return frames > 0 ? shortest / 1_000_000_000.0f : 0f;
+    }
+
+
+    /**
+     * @return The longest frame time in seconds
+     */
+    public float getLongestFrame()
+    {
+        return longest / 1_000_000_000.0f;
+    }
+
+
+    /**
+     * @return The number of frames measured
+     */
+    public long getFrameCount()
+    {
+        return frames;
+    }
+
+
+    /**
+     * Resets the frame time statistics.
+     */
+    public void resetStats()
+    {
+        frames = 0;
+        mean = 0;
+        deviations = 0;
+        shortest = Long.MAX_VALUE;
+        longest = 0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.lurch.core;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+
+/**
+ * A 2D transform kept for the previous and the current update step, so
+ * rendering can blend between them with the alpha passed to
+ * {@link Engine#render(float)}.
+ *
+ * Call {@link #advance()} at the start of every update step before changing
+ * the transform, and read it while rendering through the alpha getters:
+ * <pre>
+ * protected void update(float deltaTime)
+ * {
+ *     transform.advance();
+ *     transform.getPosition().add(velocity.x * deltaTime, velocity.y * deltaTime);
+ * }
+ *
+ * protected void render(float alpha)
+ * {
+ *     transform.getPosition(alpha, position);
+ * }
+ * </pre>
+ * Use {@link #teleport()} after a jump so the object does not visibly slide there.
+ */
+public class InterpolatedTransform
+{
+    /**
+     * Position at the previous update step.
+     */
+    private final Vector2f previousPosition = new Vector2f();
+
+
+    /**
+     * Position at the current update step.
+     */
+    private final Vector2f position = new Vector2f();
+
+
+    /**
+     * Scale at the previous update step.
+     */
+    private final Vector2f previousScale = new Vector2f(1, 1);
+
+
+    /**
+     * Scale at the current update step.
+     */
+    private final Vector2f scale = new Vector2f(1, 1);
+
+
+    /**
+     * Rotation at the previous update step, in radians.
+     */
+    private float previousRotation;
+
+
+    /**
+     * Rotation at the current update step, in radians.
+     */
+    private float rotation;
+
+
+    /**
+     * Stores the current state as the previous one. Call at the start of every update step.
+     */
+    public void advance()
+    {
+        previousPosition.set(position);
+        previousScale.set(scale);
+        previousRotation = rotation;
+    }
+
+
+    /**
+     * Discards the previous state, so the next frames show the current state
+     * without interpolating from the old one.
+     */
+    public void teleport()
+    {
+        advance();
+    }
+
+
+    /**
+     * Writes the interpolated position.
+     *
+     * @param alpha progress from the previous to the current state, in [0, 1]
+     * @param dest  the vector to write to
+     * @return dest
+     */
+    public Vector2f getPosition(float alpha, Vector2f dest)
+    {
+        return previousPosition.lerp(position, alpha, dest);
+    }
+
+
+    /**
+     * Writes the interpolated scale.
+     *
+     * @param alpha progress from the previous to the current state, in [0, 1]
+     * @param dest  the vector to write to
+     * @return dest
+     */
+    public Vector2f getScale(float alpha, Vector2f dest)
+    {
+        return previousScale.lerp(scale, alpha, dest);
+    }
+
+
+    /**
+     * Returns the interpolated rotation, turning the short way around.
+     *
+     * @param alpha progress from the previous to the current state, in [0, 1]
+     * @return the rotation in radians
+     */
+    public float getRotation(float alpha)
+    {
+        float delta = rotation - previousRotation;
+        delta -= (float) (Math.floor((delta + Math.PI) / (2 * Math.PI)) * (2 * Math.PI));
+
+        return previousRotation + delta * alpha;
+    }
+
+
+    /**
+     * Writes the interpolated model matrix: translation, then rotation, then scale.
+     *
+     * @param alpha progress from the previous to the current state, in [0, 1]
+     * @param dest  the matrix to write to
+     * @return dest
+     */
+    public Matrix4f getMatrix(float alpha, Matrix4f dest)
+    {
+        float x = previousPosition.x + (position.x - previousPosition.x) * alpha;
+        float y = previousPosition.y + (position.y - previousPosition.y) * alpha;
+        float sx = previousScale.x + (scale.x - previousScale.x) * alpha;
+        float sy = previousScale.y + (scale.y - previousScale.y) * alpha;
+
+        return dest.translation(x, y, 0).rotateZ(getRotation(alpha)).scale(sx, sy, 1);
+    }
+
+
+    /**
+     * @return The current position, modify it during updates
+     */
+    public Vector2f getPosition()
+    {
+        return position;
+    }
+
+
+    /**
+     * @return The current scale, modify it during updates
+     */
+    public Vector2f getScale()
+    {
+        return scale;
+    }
+
+
+    /**
+     * @return The current rotation in radians
+     */
+    public float getRotation()
+    {
+        return rotation;
+    }
+
+
+    /**
+     * Sets the current rotation.
+     *
+     * @param rotation the rotation in radians
+     */
+    public void setRotation(float rotation)
+    {
+        this.rotation = rotation;
+    }
+}
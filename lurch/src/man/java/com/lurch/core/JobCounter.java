@@ -0,0 +1,186 @@
+package com.lurch.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counts the unfinished jobs of a submission to a {@link JobSystem}.
+ *
+ * A counter is returned for every submission. Wait on it with {@link #await()},
+ * or pass it to later submissions so they start only after it reaches zero.
+ */
+public final class JobCounter
+{
+    /**
+     * Jobs not finished yet.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+
+    /**
+     * Actions to run once the counter reaches zero, guarded by this.
+     */
+    private List<Runnable> continuations;
+
+
+    /**
+     * First error thrown by one of the jobs.
+     */
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+
+    JobCounter()
+    {
+    }
+
+
+    /**
+     * Adds jobs to wait for.
+     */
+    void increment(int jobs)
+    {
+        pending.addAndGet(jobs);
+    }
+
+
+    /**
+     * Marks one job finished, waking waiters and starting dependents at zero.
+     */
+    void decrement()
+    {
+        if (pending.decrementAndGet() != 0)
+        {
+            return;
+        }
+
+        List<Runnable> ready;
+
+        synchronized (this)
+        {
+            ready = continuations;
+            continuations = null;
+            notifyAll();
+        }
+
+        if (ready != null)
+        {
+            ready.forEach(Runnable::run);
+        }
+    }
+
+
+    /**
+     * Runs an action once the counter reaches zero, immediately if it already has.
+     */
+    void then(Runnable action)
+    {
+        synchronized (this)
+        {
+            if (pending.get() != 0)
+            {
+                if (continuations == null)
+                {
+                    continuations = new ArrayList<>();
+                }
+
+                continuations.add(action);
+                return;
+            }
+        }
+
+        action.run();
+    }
+
+
+    /**
+     * Records a job error, keeping the first.
+     */
+    void fail(RuntimeException e)
+    {
+        failure.compareAndSet(null, e);
+    }
+
+
+    /**
+     * Returns and forgets the recorded error.
+     */
+    RuntimeException takeFailure()
+    {
+        return failure.getAndSet(null);
+    }
+
+
+    /**
+     * @return The first error thrown by one of the jobs, or null
+     */
+    RuntimeException getFailure()
+    {
+        return failure.get();
+    }
+
+
+    /**
+     * Checks whether all jobs have finished.
+     *
+     * @return true if no job is pending
+     */
+    public boolean isDone()
+    {
+        return pending.get() == 0;
+    }
+
+
+    /**
+     * Blocks until all jobs have finished. Called from a job, the pool adds a
+     * thread for the time it waits, so waiting jobs cannot starve the pool.
+     *
+     * @throws RuntimeException if one of the jobs failed, with the job's error as cause
+     */
+    public void await()
+    {
+        if (pending.get() != 0)
+        {
+            try
+            {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+                {
+                    @Override
+                    public boolean block() throws InterruptedException
+                    {
+                        synchronized (JobCounter.this)
+                        {
+                            while (pending.get() != 0)
+                            {
+                                JobCounter.this.wait();
+                            }
+                        }
+
+                        return true;
+                    }
+
+
+                    @Override
+                    public boolean isReleasable()
+                    {
+                        return pending.get() == 0;
+                    }
+                });
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for jobs", e);
+            }
+        }
+
+        RuntimeException e = failure.get();
+
+        if (e != null)
+        {
+            throw new RuntimeException("Job failed", e);
+        }
+    }
+}
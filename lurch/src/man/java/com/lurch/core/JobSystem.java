@@ -0,0 +1,287 @@
+package com.lurch.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Work-stealing job pool for spreading per-frame work such as physics,
+ * animation and culling across cores.
+ *
+ * Jobs are submitted with optional dependencies and return a {@link JobCounter};
+ * a job waits for its dependencies without blocking a thread. Every job
+ * submitted during a frame is also tracked by the system, and the engine
+ * calls {@link #waitAll()} before rendering, so render code sees finished results.
+ * Short-lived job data can go into the per-frame {@link #getArena() arena}.
+ * Arena memory is reused at the start of the next frame's update steps, so it
+ * must never reach render() or a published snapshot: in pipelined mode the
+ * render thread may still be reading a snapshot while the next frame allocates.
+ *
+ * Jobs must not call GL or GLFW.
+ */
+public class JobSystem
+{
+    /**
+     * Default arena size in bytes.
+     */
+    public static final int DEFAULT_ARENA_SIZE = 4 << 20;
+
+
+    /**
+     * Worker pool.
+     */
+    private final ForkJoinPool pool;
+
+
+    /**
+     * Counts every job submitted and not yet finished.
+     */
+    private final JobCounter all = new JobCounter();
+
+
+    /**
+     * Per-frame allocator for job data.
+     */
+    private final FrameArena arena;
+
+
+    /**
+     * Creates a job system with one worker per core, leaving a core for the calling thread.
+     */
+    public JobSystem()
+    {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_ARENA_SIZE);
+    }
+
+
+    /**
+     * Creates a job system.
+     *
+     * @param threads   the number of worker threads
+     * @param arenaSize the size of the per-frame arena in bytes
+     */
+    public JobSystem(int threads, int arenaSize)
+    {
+        if (threads <= 0)
+        {
+            throw new IllegalArgumentException("Invalid job thread count: " + threads);
+        }
+
+        pool = new ForkJoinPool(threads, owner ->
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(owner);
+            thread.setName("lurch-job-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+
+        arena = new FrameArena(arenaSize);
+    }
+
+
+    /**
+     * Submits a job.
+     *
+     * @param job   the job
+     * @param after counters the job waits for
+     * @return a counter reaching zero when the job has finished
+     */
+    public JobCounter submit(Runnable job, JobCounter... after)
+    {
+        JobCounter counter = new JobCounter();
+        counter.increment(1);
+
+        schedule(job, counter, after);
+        return counter;
+    }
+
+
+    /**
+     * Runs a body over an index range split into batches, in parallel.
+     *
+     * @param start the first index
+     * @param end   the index after the last
+     * @param batch the number of indices per job, at least 1
+     * @param body  called with each batch as [from, to)
+     * @param after counters the jobs wait for
+     * @return a counter reaching zero when every batch has finished
+     */
+    public JobCounter parallelFor(int start, int end, int batch, RangeJob body, JobCounter... after)
+    {
+        /* Validate input */
+        if (end < start || batch <= 0)
+        {
+            throw new IllegalArgumentException("Invalid parallel range");
+        }
+
+        JobCounter counter = new JobCounter();
+        int jobs = (int) (((long) end - start + batch - 1) / batch);
+        counter.increment(jobs);
+
+        for (int from = start; from < end; )
+        {
+            final int first = from;
+            final int last = (int) Math.min(end, (long) from + batch);
+
+            schedule(() -> body.run(first, last), counter, after);
+            from = last;
+        }
+
+        return counter;
+    }
+
+
+    /**
+     * Queues a job once its dependencies are done. The counter has already been incremented.
+     */
+    private void schedule(Runnable job, JobCounter counter, JobCounter[] after)
+    {
+        all.increment(1);
+
+        Runnable task = () ->
+        {
+            try
+            {
+                /* A failed dependency fails its dependents without running them */
+                for (JobCounter dependency : after)
+                {
+                    if (dependency.getFailure() != null)
+                    {
+                        throw dependency.getFailure();
+                    }
+                }
+
+                job.run();
+            }
+            catch (RuntimeException e)
+            {
+                counter.fail(e);
+                all.fail(e);
+            }
+            finally
+            {
+                counter.decrement();
+                all.decrement();
+            }
+        };
+
+        if (after.length == 0)
+        {
+            pool.execute(task);
+            return;
+        }
+
+        AtomicInteger waiting = new AtomicInteger(after.length);
+
+        for (JobCounter dependency : after)
+        {
+            dependency.then(() ->
+            {
+                if (waiting.decrementAndGet() == 0)
+                {
+                    pool.execute(task);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Blocks until every submitted job has finished.
+     *
+     * @throws RuntimeException if a job failed since the last call, with the job's error as cause
+     */
+    public void waitAll()
+    {
+        try
+        {
+            all.await();
+        }
+        finally
+        {
+            all.takeFailure();
+        }
+    }
+
+
+    /**
+     * Starts a new frame: releases the arena. Every job must have finished,
+     * and no render state or snapshot may refer to arena memory.
+     */
+    public void beginFrame()
+    {
+        arena.reset();
+    }
+
+
+    /**
+     * @return The per-frame arena, reset by {@link #beginFrame()}; copy results out before publishing them
+     */
+    public FrameArena getArena()
+    {
+        return arena;
+    }
+
+
+    /**
+     * @return The number of worker threads
+     */
+    public int getThreadCount()
+    {
+        return pool.getParallelism();
+    }
+
+
+    /**
+     * Stops the workers after the queued jobs and frees the arena.
+     * Jobs still running after a second are interrupted; if they do not stop,
+     * the arena is left allocated rather than freed under them.
+     */
+    public void delete()
+    {
+        pool.shutdown();
+
+        boolean terminated = false;
+
+        try
+        {
+            terminated = pool.awaitTermination(1, TimeUnit.SECONDS);
+
+            if (!terminated)
+            {
+                pool.shutdownNow();
+                terminated = pool.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (terminated)
+        {
+            arena.delete();
+        }
+        else
+        {
+            System.err.println("Jobs still running at shutdown, frame arena not freed");
+        }
+    }
+
+
+    /**
+     * A job over a range of indices.
+     */
+    @FunctionalInterface
+    public interface RangeJob
+    {
+        /**
+         * Processes the indices [from, to).
+         *
+         * @param from the first index
+         * @param to   the index after the last
+         */
+        void run(int from, int to);
+    }
+}
@@ -0,0 +1,55 @@
+package com.lurch.core;
+
+/**
+ * How finished frames are presented, see {@link Window#setPresentMode(PresentMode)}.
+ */
+public enum PresentMode
+{
+    /**
+     * Wait for vertical blank: no tearing, up to a frame of added latency.
+     */
+    VSYNC(1),
+
+
+    /**
+     * Wait for vertical blank unless the frame is late, then present immediately
+     * and tear instead of stalling a whole refresh. Falls back to {@link #VSYNC}
+     * where the driver lacks swap_control_tear.
+     */
+    ADAPTIVE(-1),
+
+
+    /**
+     * Present immediately: lowest latency, tearing, and as many frames as the
+     * machine can produce.
+     */
+    UNCAPPED(0),
+
+
+    /**
+     * Present immediately and let the engine's {@link FrameLimiter} hold the
+     * frame rate to a target, sleeping between frames.
+     */
+    TARGET_FPS(0);
+
+
+    /**
+     * Swap interval passed to glfwSwapInterval.
+     */
+    private final int swapInterval;
+
+
+    PresentMode(int swapInterval)
+    {
+        this.swapInterval = swapInterval;
+    }
+
+
+    /**
+     * @return The swap interval for glfwSwapInterval
+     */
+    public int getSwapInterval()
+    {
+        return swapInterval;
+    }
+}
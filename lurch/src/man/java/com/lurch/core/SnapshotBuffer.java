@@ -0,0 +1,110 @@
+package com.lurch.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free triple buffer handing snapshots from one producer thread to one consumer thread.
+ *
+ * The producer fills the object returned by {@link #write()} and calls
+ * {@link #publish()}; the consumer calls {@link #read()} and always gets the most
+ * recently published snapshot. Neither side ever waits: the producer writes into
+ * a slot the consumer cannot see, and snapshots the consumer never picked up are
+ * simply overwritten. Snapshot objects are reused, so copy state into them rather
+ * than keeping references to live objects.
+ *
+ * @param <T> the snapshot type
+ */
+public class SnapshotBuffer<T>
+{
+    /**
+     * Set in {@link #shared} when the shared slot holds a snapshot the consumer has not read.
+     */
+    private static final int FRESH = 4;
+
+
+    /**
+     * The three snapshot objects.
+     */
+    private final T[] slots;
+
+
+    /**
+     * Index of the slot between the threads, plus {@link #FRESH}.
+     */
+    private final AtomicInteger shared = new AtomicInteger(1);
+
+
+    /**
+     * Slot owned by the producer.
+     */
+    private int back = 0;
+
+
+    /**
+     * Slot owned by the consumer.
+     */
+    private int front = 2;
+
+
+    /**
+     * Creates a buffer with three snapshot objects.
+     *
+     * @param factory creates each snapshot object
+     */
+    @SuppressWarnings("unchecked")
+    public SnapshotBuffer(Supplier<T> factory)
+    {
+        slots = (T[]) new Object[] { factory.get(), factory.get(), factory.get() };
+    }
+
+
+    /**
+     * Returns the snapshot to fill next. Producer thread only.
+     *
+     * @return the snapshot being written
+     */
+    public T write()
+    {
+        return slots[back];
+    }
+
+
+    /**
+     * Publishes the snapshot returned by {@link #write()}, making it the one the
+     * consumer reads next. Producer thread only.
+     */
+    public void publish()
+    {
+        back = shared.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+
+    /**
+     * Returns the most recently published snapshot. Consumer thread only.
+     * Returns the same object until a newer snapshot is published; before the
+     * first publish it returns a snapshot as created by the factory.
+     *
+     * @return the latest snapshot
+     */
+    public T read()
+    {
+        if ((shared.get() & FRESH) != 0)
+        {
+            front = shared.getAndSet(front) & ~FRESH;
+        }
+
+        return slots[front];
+    }
+
+
+    /**
+     * Checks whether a snapshot was published since the last {@link #read()}.
+     *
+     * @return true if {@link #read()} would return a newer snapshot
+     */
+    public boolean hasNew()
+    {
+        return (shared.get() & FRESH) != 0;
+    }
+}
@@ -103,6 +103,164 @@ public class Timer
 
 
 
+    /** 
+     * Updates per second requested through {@link #setUPS(float)}.
+     * Adaptive mode never runs faster than this.
+     */
+    private float target_updates_per_second = 60.0f;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Maximum update steps per frame. Time beyond it is dropped,
+     * so a slow frame never causes an even slower catch-up frame.
+     */
+    private int max_updates = 5;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Frames longer than this, in nanoseconds, count as hitches. 
+     */
+    private long hitch_threshold = 100_000_000L;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Whether the last frame was a hitch. 
+     */
+    private boolean hitch;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Number of hitches since the last stats reset. 
+     */
+    private int hitch_count;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Longest frame since the last stats reset, in nanoseconds. 
+     */
+    private long longest_frame;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Time dropped by the step clamp since the last stats reset, in nanoseconds. 
+     */
+    private long dropped_time;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Whether the update rate adapts to the update cost. 
+     */
+    private boolean adaptive;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Lowest update rate adaptive mode may fall to. 
+     */
+    private float min_updates_per_second = 30.0f;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Smoothed share of real time spent updating: update time per frame
+     * divided by the simulated time it covered. Above 1 the loop falls behind.
+     */
+    private float load;
+
+
+
+
+
+
+
+
+
+
+    /** 
+     * Consecutive frames above the overload or below the recovery threshold,
+     * positive while overloaded, negative while recovering.
+     */
+    private int load_streak;
+
+
+
+
+
+
+
+
+
+
     /**
      * Starts Timer
      * - Records the initial start time.
@@ -131,6 +289,7 @@ public class Timer
         previous_time = current_time;
         accumulated_time = 0;
         accumulated_updates = 0;
+        hitch = false;
     }
 
 
@@ -152,8 +311,29 @@ public class Timer
         accumulated_time += delta_time;
         previous_time = current_time;
 
+        // Record hitches, e.g. GC pauses, window drags or breakpoints.
+        hitch = delta_time > hitch_threshold;
+        if (hitch)
+        {
+            hitch_count++;
+        }
+
+        longest_frame = Math.max(longest_frame, delta_time);
+
         // Compute how many fixed updates are pending based on accumulated time.
-        accumulated_updates = (int) (accumulated_time / update_interval);
+        long pending = accumulated_time / update_interval;
+
+        // Drop what exceeds the step limit rather than spiral into ever longer frames.
+        if (pending > max_updates)
+        {
+            long dropped = (pending - max_updates) * update_interval;
+
+            accumulated_time -= dropped;
+            dropped_time += dropped;
+            pending = max_updates;
+        }
+
+        accumulated_updates = (int) pending;
     }
 
 
@@ -189,9 +369,171 @@ public class Timer
      * @param UPS Updates per second to target.
      */
     public void setUPS(float UPS) 
+    {
+        if (UPS <= 0)
+        {
+            throw new IllegalArgumentException("Invalid UPS: " + UPS);
+        }
+
+        target_updates_per_second = UPS;
+        applyUPS(UPS);
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Changes the running update rate without changing the target.
+     */
+    private void applyUPS(float UPS)
     {
         updates_per_second = UPS;
         update_interval = (long) (1_000_000_000L / UPS);
+        load_streak = 0;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Sets the maximum number of update steps per frame.
+     * Pending time beyond it is dropped, so the simulation runs slower than
+     * real time for a moment instead of freezing the game.
+     * 
+     * @param steps Maximum steps per frame, at least 1.
+     */
+    public void setMaxUpdates(int steps)
+    {
+        if (steps < 1)
+        {
+            throw new IllegalArgumentException("Invalid max updates: " + steps);
+        }
+
+        max_updates = steps;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Sets how long a frame must take to count as a hitch.
+     * 
+     * @param seconds Hitch threshold in seconds.
+     */
+    public void setHitchThreshold(float seconds)
+    {
+        if (seconds <= 0)
+        {
+            throw new IllegalArgumentException("Invalid hitch threshold: " + seconds);
+        }
+
+        hitch_threshold = (long) (seconds * 1_000_000_000L);
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Enables adaptive update rate control.
+     * While updates take more than 90% of the time they simulate the UPS drops
+     * in 10% steps down to the minimum; once they take less than half it climbs
+     * back towards the UPS set with {@link #setUPS(float)}.
+     * 
+     * @param enabled Whether to adapt the update rate.
+     * @param minUPS  Lowest updates per second to fall to, ignored when disabling.
+     */
+    public void setAdaptive(boolean enabled, float minUPS)
+    {
+        if (enabled && (minUPS <= 0 || minUPS > target_updates_per_second))
+        {
+            throw new IllegalArgumentException("Invalid minimum UPS: " + minUPS);
+        }
+
+        adaptive = enabled;
+        load = 0;
+
+        if (enabled)
+        {
+            min_updates_per_second = minUPS;
+        }
+        else
+        {
+            applyUPS(target_updates_per_second);
+        }
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Records how long this frame's update steps took and, in adaptive mode,
+     * adjusts the update rate after half a second of sustained overload or headroom.
+     * 
+     * @param nanos Time spent running the update steps in nanoseconds.
+     */
+    public void recordUpdateTime(long nanos)
+    {
+        if (!adaptive || accumulated_updates == 0)
+        {
+            return;
+        }
+
+        float frame_load = (float) nanos / (accumulated_updates * update_interval);
+        load += (frame_load - load) * 0.1f;
+
+        if (load > 0.9f)
+        {
+            load_streak = Math.max(load_streak, 0) + accumulated_updates;
+        }
+        else if (load < 0.5f)
+        {
+            load_streak = Math.min(load_streak, 0) - accumulated_updates;
+        }
+        else
+        {
+            load_streak = 0;
+        }
+
+        int sustained = (int) (updates_per_second / 2);
+
+        if (load_streak >= sustained && updates_per_second > min_updates_per_second)
+        {
+            applyUPS(Math.max(min_updates_per_second, updates_per_second * 0.9f));
+        }
+        else if (-load_streak >= sustained && updates_per_second < target_updates_per_second)
+        {
+            applyUPS(Math.min(target_updates_per_second, updates_per_second / 0.9f));
+        }
     }
 
 
@@ -219,6 +561,23 @@ public class Timer
 
 
 
+    /**
+     * @return The fixed time step passed to every update, in seconds.
+     */
+    public float getUpdateDelta()
+    {
+        return update_interval / 1_000_000_000.0f;
+    }
+
+
+
+
+
+
+
+
+
+
     /**
      * @return Time between current and previous frame in seconds.
      */
@@ -264,6 +623,24 @@ public class Timer
 
 
 
+
+
+
+
+    /**
+     * @return Updates per second requested with {@link #setUPS(float)}, which
+     * adaptive mode restores once the load allows.
+     */
+    public float getTargetUPS()
+    {
+        return target_updates_per_second;
+    }
+
+
+
+
+
+
     
 
 
@@ -274,4 +651,131 @@ public class Timer
     {
         return accumulated_time;
     }
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Interpolation factor between the last two update steps.
+     * Valid after {@link #consume()}: the leftover time that has not been
+     * simulated yet, as a fraction of one update interval.
+     *
+     * @return Leftover time divided by the update interval, in [0, 1).
+     */
+    public float getAlpha()
+    {
+        return Math.min(1.0f, (float) accumulated_time / update_interval);
+    }
+
+
+
+
+
+
+
+
+
+
+
+    /**
+     * @return Whether the last frame took longer than the hitch threshold.
+     */
+    public boolean isHitch()
+    {
+        return hitch;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * @return Number of hitches since the last stats reset.
+     */
+    public int getHitchCount()
+    {
+        return hitch_count;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * @return Longest frame since the last stats reset, in seconds.
+     */
+    public float getLongestFrame()
+    {
+        return longest_frame / 1_000_000_000.0f;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * @return Time dropped by the step limit since the last stats reset, in seconds.
+     */
+    public float getDroppedTime()
+    {
+        return dropped_time / 1_000_000_000.0f;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * @return Smoothed share of real time spent in updates, tracked in adaptive mode.
+     */
+    public float getLoad()
+    {
+        return load;
+    }
+
+
+
+
+
+
+
+
+
+
+    /**
+     * Resets the hitch count, longest frame and dropped time.
+     */
+    public void resetStats()
+    {
+        hitch_count = 0;
+        longest_frame = 0;
+        dropped_time = 0;
+    }
 }
@@ -6,6 +6,8 @@ import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.glfw.GLFWKeyCallback;
 import org.lwjgl.opengl.GL;
 
+import com.lurch.display.GLState;
+
 import static org.lwjgl.glfw.GLFW.*;
 
 /**
@@ -39,6 +41,12 @@ public class Window
     private final GLFWKeyCallback keyCallback;
 
 
+    /**
+     * Present mode in effect.
+     */
+    private PresentMode presentMode = PresentMode.VSYNC;
+
+
     /**
      * Creates a GLFW window with the specified width, height, and title.
      * 
@@ -110,10 +118,11 @@ public class Window
         /* Create OpenGL context */
         glfwMakeContextCurrent(handle);
         GL.createCapabilities();
+        GLState.invalidate();
 
 
         /* Enable v-sync */
-        glfwSwapInterval(1);
+        glfwSwapInterval(presentMode.getSwapInterval());
 
 
         /* Set key callback */
@@ -178,6 +187,42 @@ public class Window
     }
 
 
+    /**
+     * Sets how frames are presented. Must be called on the thread owning the context.
+     * {@link PresentMode#ADAPTIVE} falls back to {@link PresentMode#VSYNC} when the
+     * driver lacks swap_control_tear; {@link PresentMode#TARGET_FPS} only disables
+     * v-sync, the frame rate is held by the engine's {@link FrameLimiter}.
+     *
+     * @param mode the present mode
+     * @return the mode in effect
+     */
+    public PresentMode setPresentMode(PresentMode mode)
+    {
+        if (mode == PresentMode.ADAPTIVE &&
+            !glfwExtensionSupported("WGL_EXT_swap_control_tear") &&
+            !glfwExtensionSupported("GLX_EXT_swap_control_tear"))
+        {
+            mode = PresentMode.VSYNC;
+        }
+
+        glfwSwapInterval(mode.getSwapInterval());
+        presentMode = mode;
+
+        return mode;
+    }
+
+
+    /**
+     * Returns the present mode in effect.
+     *
+     * @return the present mode
+     */
+    public PresentMode getPresentMode()
+    {
+        return presentMode;
+    }
+
+
     /**
      * Destroys the window, terminates GLFW, and frees its callbacks.
      */
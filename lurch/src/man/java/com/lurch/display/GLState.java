@@ -0,0 +1,536 @@
+package com.lurch.display;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL45.glBindTextureUnit;
+
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+/**
+ * Tracks the GL state the engine changes most often and skips calls that would
+ * not change it: the current program, vertex array, active texture unit, the
+ * texture bound on each unit, and blend and depth state.
+ *
+ * The cache only works if every change goes through it. Code that calls GL
+ * directly, or a library that does, must call {@link #invalidate()} afterwards.
+ * Deleted objects must be reported (see {@link #deleteProgram(int)} and friends)
+ * because the driver reuses their handles.
+ *
+ * By default objects are unbound after use, as the engine always did. Turning
+ * that off with {@link #setUnbindAfterUse(boolean)} leaves the last program,
+ * vertex array and texture bound, so consecutive draws of the same object skip
+ * their binds entirely.
+ *
+ * All methods must be called on the GL thread.
+ */
+public final class GLState
+{
+    /**
+     * Texture units tracked, higher units are passed through uncached.
+     */
+    private static final int TRACKED_UNITS = 32;
+
+
+    /**
+     * Marks a cached value as unknown.
+     */
+    private static final int UNKNOWN = -1;
+
+
+    /**
+     * Current program handle.
+     */
+    private static int program = UNKNOWN;
+
+
+    /**
+     * Current vertex array handle.
+     */
+    private static int vertexArray = UNKNOWN;
+
+
+    /**
+     * Active texture unit, 0 for GL_TEXTURE0.
+     */
+    private static int activeUnit = UNKNOWN;
+
+
+    /**
+     * Target of the last texture bound on each unit.
+     */
+    private static final int[] textureTargets = new int[TRACKED_UNITS];
+
+
+    /**
+     * Handle of the last texture bound on each unit.
+     */
+    private static final int[] textures = new int[TRACKED_UNITS];
+
+
+    /**
+     * Whether glBindTextureUnit is available, UNKNOWN until first needed.
+     */
+    private static int directStateAccess = UNKNOWN;
+
+
+    /**
+     * GL_BLEND state, UNKNOWN, GL_FALSE or GL_TRUE.
+     */
+    private static int blend = UNKNOWN;
+
+
+    /**
+     * Blend source factor.
+     */
+    private static int blendSource = UNKNOWN;
+
+
+    /**
+     * Blend destination factor.
+     */
+    private static int blendDestination = UNKNOWN;
+
+
+    /**
+     * GL_DEPTH_TEST state, UNKNOWN, GL_FALSE or GL_TRUE.
+     */
+    private static int depthTest = UNKNOWN;
+
+
+    /**
+     * Depth write mask, UNKNOWN, GL_FALSE or GL_TRUE.
+     */
+    private static int depthMask = UNKNOWN;
+
+
+    /**
+     * Depth comparison function.
+     */
+    private static int depthFunction = UNKNOWN;
+
+
+    /**
+     * Whether meshes, batches and programs restore the default binding after use.
+     */
+    private static boolean unbindAfterUse = true;
+
+
+    /**
+     * State changes sent to the driver since the last reset.
+     */
+    private static long issuedCalls;
+
+
+    /**
+     * State changes skipped because the state was already set.
+     */
+    private static long skippedCalls;
+
+
+    static
+    {
+        invalidate();
+    }
+
+
+    private GLState()
+    {
+    }
+
+
+    // --- Objects --- //
+
+    /**
+     * Makes a program current.
+     *
+     * @param handle the program handle, 0 for none
+     */
+    public static void useProgram(int handle)
+    {
+        if (program == handle && countSkipped())
+        {
+            return;
+        }
+
+        glUseProgram(handle);
+        program = handle;
+        issuedCalls++;
+    }
+
+
+    /**
+     * Binds a vertex array.
+     *
+     * @param handle the vertex array handle, 0 for none
+     */
+    public static void bindVertexArray(int handle)
+    {
+        if (vertexArray == handle && countSkipped())
+        {
+            return;
+        }
+
+        glBindVertexArray(handle);
+        vertexArray = handle;
+        issuedCalls++;
+    }
+
+
+    /**
+     * Selects the active texture unit.
+     *
+     * @param unit the texture unit, 0 for GL_TEXTURE0
+     */
+    public static void activeTexture(int unit)
+    {
+        if (activeUnit == unit && countSkipped())
+        {
+            return;
+        }
+
+        glActiveTexture(GL_TEXTURE0 + unit);
+        activeUnit = unit;
+        issuedCalls++;
+    }
+
+
+    /**
+     * Binds a texture to the active texture unit.
+     * If the active unit is unknown, e.g. after {@link #invalidate()}, unit 0 is
+     * made active first so the cache knows which slot the bind changes.
+     *
+     * @param target the texture target, e.g. GL_TEXTURE_2D
+     * @param handle the texture handle, 0 to unbind
+     */
+    public static void bindTexture(int target, int handle)
+    {
+        if (activeUnit == UNKNOWN)
+        {
+            activeTexture(0);
+        }
+
+        int unit = activeUnit;
+
+        if (unit >= 0 && unit < TRACKED_UNITS && textures[unit] == handle && textureTargets[unit] == target && countSkipped())
+        {
+            return;
+        }
+
+        glBindTexture(target, handle);
+        issuedCalls++;
+
+        if (unit >= 0 && unit < TRACKED_UNITS)
+        {
+            textureTargets[unit] = target;
+            textures[unit] = handle;
+        }
+    }
+
+
+    /**
+     * Binds a texture to a texture unit. With direct state access (GL 4.5 or
+     * ARB_direct_state_access) the active unit is left alone, otherwise the
+     * unit is made active first.
+     *
+     * @param unit   the texture unit, 0 for GL_TEXTURE0
+     * @param target the texture target, e.g. GL_TEXTURE_2D
+     * @param handle the texture handle, 0 to unbind
+     */
+    public static void bindTexture(int unit, int target, int handle)
+    {
+        if (unit < 0)
+        {
+            throw new IllegalArgumentException("Invalid texture unit: " + unit);
+        }
+
+        if (!hasDirectStateAccess())
+        {
+            activeTexture(unit);
+            bindTexture(target, handle);
+            return;
+        }
+
+        boolean tracked = unit < TRACKED_UNITS;
+
+        if (tracked && textures[unit] == handle && textureTargets[unit] == target && countSkipped())
+        {
+            return;
+        }
+
+        glBindTextureUnit(unit, handle);
+        issuedCalls++;
+
+        if (tracked)
+        {
+            textureTargets[unit] = target;
+            textures[unit] = handle;
+        }
+    }
+
+
+    /**
+     * Checks once per context whether glBindTextureUnit can be used.
+     */
+    private static boolean hasDirectStateAccess()
+    {
+        if (directStateAccess == UNKNOWN)
+        {
+            GLCapabilities caps = GL.getCapabilities();
+            directStateAccess = caps.OpenGL45 || caps.GL_ARB_direct_state_access ? GL_TRUE : GL_FALSE;
+        }
+
+        return directStateAccess == GL_TRUE;
+    }
+
+
+    // --- Fixed function state --- //
+
+    /**
+     * Enables or disables blending.
+     *
+     * @param enabled true to enable GL_BLEND
+     */
+    public static void setBlend(boolean enabled)
+    {
+        blend = toggle(GL_BLEND, blend, enabled);
+    }
+
+
+    /**
+     * Sets the blend factors.
+     *
+     * @param source      the source factor, e.g. GL_SRC_ALPHA
+     * @param destination the destination factor, e.g. GL_ONE_MINUS_SRC_ALPHA
+     */
+    public static void setBlendFunction(int source, int destination)
+    {
+        if (blendSource == source && blendDestination == destination && countSkipped())
+        {
+            return;
+        }
+
+        glBlendFunc(source, destination);
+        blendSource = source;
+        blendDestination = destination;
+        issuedCalls++;
+    }
+
+
+    /**
+     * Enables or disables depth testing.
+     *
+     * @param enabled true to enable GL_DEPTH_TEST
+     */
+    public static void setDepthTest(boolean enabled)
+    {
+        depthTest = toggle(GL_DEPTH_TEST, depthTest, enabled);
+    }
+
+
+    /**
+     * Enables or disables depth writes.
+     *
+     * @param write true to write depth values
+     */
+    public static void setDepthMask(boolean write)
+    {
+        int value = write ? GL_TRUE : GL_FALSE;
+
+        if (depthMask == value && countSkipped())
+        {
+            return;
+        }
+
+        glDepthMask(write);
+        depthMask = value;
+        issuedCalls++;
+    }
+
+
+    /**
+     * Sets the depth comparison function.
+     *
+     * @param function the function, e.g. GL_LESS
+     */
+    public static void setDepthFunction(int function)
+    {
+        if (depthFunction == function && countSkipped())
+        {
+            return;
+        }
+
+        glDepthFunc(function);
+        depthFunction = function;
+        issuedCalls++;
+    }
+
+
+    /**
+     * Enables or disables a capability unless it already has that state.
+     *
+     * @return the new cached state
+     */
+    private static int toggle(int capability, int current, boolean enabled)
+    {
+        int value = enabled ? GL_TRUE : GL_FALSE;
+
+        if (current == value && countSkipped())
+        {
+            return current;
+        }
+
+        if (enabled)
+        {
+            glEnable(capability);
+        }
+        else
+        {
+            glDisable(capability);
+        }
+
+        issuedCalls++;
+        return value;
+    }
+
+
+    // --- Deleted objects --- //
+    //
+    // GL unbinds deleted textures and vertex arrays itself, and handles are
+    // reused, so the cache must not claim a deleted handle is still bound.
+
+    /**
+     * Reports a deleted program.
+     *
+     * @param handle the program handle
+     */
+    public static void deleteProgram(int handle)
+    {
+        if (program == handle)
+        {
+            program = UNKNOWN;
+        }
+    }
+
+
+    /**
+     * Reports a deleted vertex array.
+     *
+     * @param handle the vertex array handle
+     */
+    public static void deleteVertexArray(int handle)
+    {
+        if (vertexArray == handle)
+        {
+            vertexArray = UNKNOWN;
+        }
+    }
+
+
+    /**
+     * Reports a deleted texture.
+     *
+     * @param handle the texture handle
+     */
+    public static void deleteTexture(int handle)
+    {
+        for (int unit = 0; unit < TRACKED_UNITS; unit++)
+        {
+            if (textures[unit] == handle)
+            {
+                textures[unit] = UNKNOWN;
+            }
+        }
+    }
+
+
+    /**
+     * Forgets all cached state, so the next change of everything reaches the driver.
+     * Call this after GL state was changed without going through this class,
+     * and after a new context was made current.
+     */
+    public static void invalidate()
+    {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeUnit = UNKNOWN;
+        Arrays.fill(textureTargets, UNKNOWN);
+        Arrays.fill(textures, UNKNOWN);
+        directStateAccess = UNKNOWN;
+
+        blend = UNKNOWN;
+        blendSource = UNKNOWN;
+        blendDestination = UNKNOWN;
+        depthTest = UNKNOWN;
+        depthMask = UNKNOWN;
+        depthFunction = UNKNOWN;
+    }
+
+
+    /**
+     * Sets whether meshes, sprite batches and programs restore the default
+     * binding after they are used. Disabling it lets repeated draws skip their binds,
+     * but code calling GL directly can then find those objects still bound.
+     *
+     * @param enabled true to unbind after use (the default), false to leave objects bound
+     */
+    public static void setUnbindAfterUse(boolean enabled)
+    {
+        unbindAfterUse = enabled;
+    }
+
+
+    /**
+     * Returns whether objects are unbound after use.
+     *
+     * @return true if objects are unbound after use
+     */
+    public static boolean isUnbindAfterUse()
+    {
+        return unbindAfterUse;
+    }
+
+
+    private static boolean countSkipped()
+    {
+        skippedCalls++;
+        return true;
+    }
+
+
+    /**
+     * Returns the number of state changes that were sent to the driver.
+     *
+     * @return the issued call count since the last reset
+     */
+    public static long getIssuedCalls()
+    {
+        return issuedCalls;
+    }
+
+
+    /**
+     * Returns the number of state changes skipped because nothing would have changed.
+     *
+     * @return the skipped call count since the last reset
+     */
+    public static long getSkippedCalls()
+    {
+        return skippedCalls;
+    }
+
+
+    /**
+     * Resets the issued and skipped call counters.
+     */
+    public static void resetStats()
+    {
+        issuedCalls = 0;
+        skippedCalls = 0;
+    }
+}
@@ -0,0 +1,592 @@
+package com.lurch.display;
+
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import com.lurch.display.buffer.StreamingBuffer;
+import com.lurch.display.mesh.VertexAttribute;
+import com.lurch.display.mesh.VertexLayout;
+import com.lurch.display.shader.Shader;
+import com.lurch.display.shader.ShaderProgram;
+import com.lurch.display.texture.Texture;
+import com.lurch.display.texture.TextureRegion;
+
+/**
+ * Batches textured quads and draws them with one draw call per texture.
+ *
+ * Sprites are laid out like a {@link com.lurch.display.mesh.UVQuad}: the local
+ * quad spans 0 to 1 on both axes, is scaled to the sprite size, rotated around
+ * its center and translated to the sprite position.
+ *
+ * Sprites are grouped by texture when the batch is flushed. Sprites sharing a
+ * texture keep their submission order, but ordering between different textures
+ * is not preserved, so call {@link #flush()} between layers that must overlap
+ * in a specific order. Blend state is left to the caller.
+ */
+public class SpriteBatch
+{
+    /**
+     * Floats per vertex: x, y (position), u, v (texture), r, g, b, a (tint).
+     */
+    private static final int VERTEX_FLOATS = 8;
+
+
+    /**
+     * Layout of a sprite vertex, matching {@link #VERTEX_FLOATS}.
+     */
+    private static final VertexLayout LAYOUT = new VertexLayout
+    (
+        VertexAttribute.floats(0, 2),   // Position
+        VertexAttribute.floats(1, 2),   // Texture coordinates
+        VertexAttribute.floats(2, 4)    // Tint
+    );
+
+
+    /**
+     * Floats per sprite (four vertices).
+     */
+    private static final int SPRITE_FLOATS = 4 * VERTEX_FLOATS;
+
+
+    /**
+     * Indices per sprite (two triangles).
+     */
+    private static final int SPRITE_INDICES = 6;
+
+
+    /**
+     * Default number of sprites drawn per flush.
+     */
+    public static final int DEFAULT_CAPACITY = 16_384;
+
+
+    /**
+     * Maximum number of sprites held before the batch flushes itself.
+     */
+    private final int capacity;
+
+
+    /**
+     * Handle for the vertex array object.
+     */
+    private final int vao;
+
+
+    /**
+     * Streaming vertex buffer, one region holds a full batch.
+     */
+    private final StreamingBuffer stream;
+
+
+    /**
+     * Handle for the static element buffer object.
+     */
+    private final int ebo;
+
+
+    /**
+     * Vertex data in submission order.
+     */
+    private final float[] vertices;
+
+
+    /**
+     * Texture slot of each submitted sprite.
+     */
+    private final int[] slots;
+
+
+    /**
+     * Distinct textures referenced by the current batch, indexed by slot.
+     */
+    private Texture[] textures = new Texture[16];
+
+
+    /**
+     * Sprite count per texture slot, reused as write cursors while grouping.
+     */
+    private int[] slotCounts = new int[16];
+
+
+    /**
+     * Number of distinct textures in the current batch.
+     */
+    private int textureCount;
+
+
+    /**
+     * Slot of the most recently used texture, checked first on every draw.
+     */
+    private int lastSlot = -1;
+
+
+    /**
+     * Number of sprites in the current batch.
+     */
+    private int count;
+
+
+    /**
+     * Shader program used to draw the batch.
+     */
+    private final ShaderProgram program;
+
+
+    /**
+     * Whether the program was created by and is deleted with this batch.
+     */
+    private final boolean ownsProgram;
+
+
+    /**
+     * Location of the projection uniform.
+     */
+    private final int projectionLocation;
+
+
+    /**
+     * Location of the texture sampler uniform.
+     */
+    private final int textureLocation;
+
+
+    /**
+     * Whether {@link #begin(Matrix4f)} has been called without a matching {@link #end()}.
+     */
+    private boolean drawing;
+
+
+    /**
+     * Number of draw calls issued since the last {@link #begin(Matrix4f)}.
+     */
+    private int drawCalls;
+
+
+    /**
+     * Creates a sprite batch with the default sprite shader and capacity.
+     */
+    public SpriteBatch()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * Creates a sprite batch with the default sprite shader.
+     *
+     * @param capacity the maximum number of sprites drawn per flush
+     */
+    public SpriteBatch(int capacity)
+    {
+        this(new ShaderProgram(new Shader("sprite/sprite.vert"), new Shader("sprite/sprite.frag")), capacity, true);
+    }
+
+
+    /**
+     * Creates a sprite batch using the given shader program.
+     * The program must accept position at location 0, texture coordinates at
+     * location 1 and tint at location 2, and declare u_projection and u_texture.
+     *
+     * @param program  the shader program to draw with
+     * @param capacity the maximum number of sprites drawn per flush
+     */
+    public SpriteBatch(ShaderProgram program, int capacity)
+    {
+        this(program, capacity, false);
+    }
+
+
+    private SpriteBatch(ShaderProgram program, int capacity, boolean ownsProgram)
+    {
+        /* Validate input, every region of the streaming buffer must be addressable */
+        if (program == null || capacity <= 0 || capacity > Integer.MAX_VALUE / (SPRITE_FLOATS * Float.BYTES * StreamingBuffer.REGIONS))
+        {
+            throw new IllegalArgumentException("Invalid sprite batch parameters");
+        }
+
+
+        this.program = program;
+        this.ownsProgram = ownsProgram;
+        this.capacity = capacity;
+
+        projectionLocation = program.getUniformLocation("u_projection");
+        textureLocation = program.getUniformLocation("u_texture");
+
+
+        /* CPU-side storage */
+        vertices = new float[capacity * SPRITE_FLOATS];
+        slots = new int[capacity];
+
+
+        /* Create vertex array object */
+        vao = glGenVertexArrays();
+        GLState.bindVertexArray(vao);
+
+
+        /* Create streaming vertex buffer, each flush writes one region */
+        stream = new StreamingBuffer(GL_ARRAY_BUFFER, capacity * SPRITE_FLOATS * Float.BYTES);
+        glBindBuffer(GL_ARRAY_BUFFER, stream.getHandle());
+
+
+        /* Create index buffer object with the quad pattern for every sprite */
+        IntBuffer indices = MemoryUtil.memAllocInt(capacity * SPRITE_INDICES);
+        for (int i = 0; i < capacity; i++)
+        {
+            int vertex = i * 4;
+            indices.put(vertex).put(vertex + 1).put(vertex + 2)
+                   .put(vertex).put(vertex + 2).put(vertex + 3);
+        }
+        indices.flip();
+
+        ebo = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        MemoryUtil.memFree(indices);
+
+
+        /* Configure vertex attributes */
+        LAYOUT.apply();
+
+
+        /* Unbind buffers */
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        GLState.bindVertexArray(0);
+    }
+
+
+    /**
+     * Starts a batch, installing the shader program and uploading the projection.
+     *
+     * @param projection the projection matrix applied to all sprites
+     */
+    public void begin(Matrix4f projection)
+    {
+        if (drawing)
+        {
+            throw new IllegalStateException("SpriteBatch.end() must be called before begin()");
+        }
+
+        drawing = true;
+        drawCalls = 0;
+
+        program.install();
+        program.setUniform(projectionLocation, projection);
+        program.setUniform(textureLocation, 0);
+    }
+
+
+    /**
+     * Draws a whole texture untinted and unrotated.
+     *
+     * @param texture the texture to draw
+     * @param x       the x position of the sprite's lower left corner
+     * @param y       the y position of the sprite's lower left corner
+     * @param width   the sprite width
+     * @param height  the sprite height
+     */
+    public void draw(Texture texture, float x, float y, float width, float height)
+    {
+        draw(texture, x, y, width, height, 0f, 0f, 0f, 1f, 1f, 1f, 1f, 1f, 1f);
+    }
+
+
+    /**
+     * Draws a texture region, such as an atlas entry, untinted and unrotated.
+     *
+     * @param region the texture region to draw
+     * @param x      the x position of the sprite's lower left corner
+     * @param y      the y position of the sprite's lower left corner
+     * @param width  the sprite width
+     * @param height the sprite height
+     */
+    public void draw(TextureRegion region, float x, float y, float width, float height)
+    {
+        draw(region, x, y, width, height, 0f, 1f, 1f, 1f, 1f);
+    }
+
+
+    /**
+     * Draws a texture region, such as an atlas entry, with rotation and tint.
+     *
+     * @param region   the texture region to draw
+     * @param x        the x position of the sprite's lower left corner
+     * @param y        the y position of the sprite's lower left corner
+     * @param width    the sprite width
+     * @param height   the sprite height
+     * @param rotation the rotation around the sprite center in radians
+     * @param r        the red tint
+     * @param g        the green tint
+     * @param b        the blue tint
+     * @param a        the alpha tint
+     */
+    public void draw(TextureRegion region, float x, float y, float width, float height, float rotation,
+                     float r, float g, float b, float a)
+    {
+        draw(region.getTexture(), x, y, width, height, rotation,
+             region.getU0(), region.getV0(), region.getU1(), region.getV1(),
+             r, g, b, a);
+    }
+
+
+    /**
+     * Draws a region of a texture with rotation and tint.
+     *
+     * @param texture  the texture to draw
+     * @param x        the x position of the sprite's lower left corner
+     * @param y        the y position of the sprite's lower left corner
+     * @param width    the sprite width
+     * @param height   the sprite height
+     * @param rotation the rotation around the sprite center in radians
+     * @param u0       the left texture coordinate
+     * @param v0       the bottom texture coordinate
+     * @param u1       the right texture coordinate
+     * @param v1       the top texture coordinate
+     * @param r        the red tint
+     * @param g        the green tint
+     * @param b        the blue tint
+     * @param a        the alpha tint
+     */
+    public void draw(Texture texture, float x, float y, float width, float height, float rotation,
+                     float u0, float v0, float u1, float v1,
+                     float r, float g, float b, float a)
+    {
+        if (!drawing)
+        {
+            throw new IllegalStateException("SpriteBatch.begin() must be called before draw()");
+        }
+
+
+        /* Make room if the batch is full */
+        if (count == capacity)
+        {
+            flush();
+        }
+
+        slots[count] = slotOf(texture);
+
+
+        /* Corner offsets relative to the sprite center */
+        float hw = width * 0.5f;
+        float hh = height * 0.5f;
+        float cx = x + hw;
+        float cy = y + hh;
+
+        float cos = 1f, sin = 0f;
+        if (rotation != 0f)
+        {
+            cos = (float) Math.cos(rotation);
+            sin = (float) Math.sin(rotation);
+        }
+
+
+        /* Rotated half extents, shared by all four corners */
+        float ax = hw * cos, ay = hw * sin;
+        float bx = hh * sin, by = hh * cos;
+
+        int i = count * SPRITE_FLOATS;
+        i = put(i, cx - ax + bx, cy - ay - by, u0, v0, r, g, b, a);
+        i = put(i, cx + ax + bx, cy + ay - by, u1, v0, r, g, b, a);
+        i = put(i, cx + ax - bx, cy + ay + by, u1, v1, r, g, b, a);
+            put(i, cx - ax - bx, cy - ay + by, u0, v1, r, g, b, a);
+
+        count++;
+    }
+
+
+    /**
+     * Writes one vertex into the staging array.
+     *
+     * @return the index following the written vertex
+     */
+    private int put(int i, float x, float y, float u, float v, float r, float g, float b, float a)
+    {
+        vertices[i]     = x;
+        vertices[i + 1] = y;
+        vertices[i + 2] = u;
+        vertices[i + 3] = v;
+        vertices[i + 4] = r;
+        vertices[i + 5] = g;
+        vertices[i + 6] = b;
+        vertices[i + 7] = a;
+        return i + VERTEX_FLOATS;
+    }
+
+
+    /**
+     * Returns the slot of a texture in the current batch, registering it if needed.
+     */
+    private int slotOf(Texture texture)
+    {
+        if (lastSlot != -1 && textures[lastSlot] == texture)
+        {
+            return lastSlot;
+        }
+
+        for (int slot = 0; slot < textureCount; slot++)
+        {
+            if (textures[slot] == texture)
+            {
+                return lastSlot = slot;
+            }
+        }
+
+
+        /* Grow slot storage */
+        if (textureCount == textures.length)
+        {
+            textures = Arrays.copyOf(textures, textureCount * 2);
+            slotCounts = Arrays.copyOf(slotCounts, textureCount * 2);
+        }
+
+        textures[textureCount] = texture;
+        return lastSlot = textureCount++;
+    }
+
+
+    /**
+     * Uploads the pending sprites grouped by texture and draws each group with one call.
+     */
+    public void flush()
+    {
+        if (count == 0)
+        {
+            return;
+        }
+
+
+        /* Count sprites per texture */
+        for (int i = 0; i < count; i++)
+        {
+            slotCounts[slots[i]]++;
+        }
+
+
+        /* Convert counts into start offsets (in sprites) */
+        int offset = 0;
+        for (int slot = 0; slot < textureCount; slot++)
+        {
+            int n = slotCounts[slot];
+            slotCounts[slot] = offset;
+            offset += n;
+        }
+
+
+        /* Scatter sprites straight into buffer memory, preserving submission order within a group */
+        FloatBuffer upload = stream.map().asFloatBuffer();
+
+        for (int i = 0; i < count; i++)
+        {
+            int target = slotCounts[slots[i]]++;
+            upload.put(target * SPRITE_FLOATS, vertices, i * SPRITE_FLOATS, SPRITE_FLOATS);
+        }
+
+        stream.commit(count * SPRITE_FLOATS * Float.BYTES);
+
+
+        /* Vertices of this flush start at the region offset */
+        int baseVertex = (int) (stream.getOffset() / (VERTEX_FLOATS * Float.BYTES));
+
+
+        /* One draw call per texture, slotCounts now holds each group's end offset */
+        GLState.bindVertexArray(vao);
+        GLState.activeTexture(0);
+
+        int start = 0;
+        for (int slot = 0; slot < textureCount; slot++)
+        {
+            int end = slotCounts[slot];
+
+            textures[slot].bind(0);
+            glDrawElementsBaseVertex(GL_TRIANGLES, (end - start) * SPRITE_INDICES, GL_UNSIGNED_INT, (long) start * SPRITE_INDICES * Integer.BYTES, baseVertex);
+            drawCalls++;
+
+            start = end;
+        }
+
+        if (GLState.isUnbindAfterUse())
+        {
+            GLState.bindVertexArray(0);
+        }
+
+        stream.fence();
+
+
+        /* Reset batch state */
+        Arrays.fill(textures, 0, textureCount, null);
+        Arrays.fill(slotCounts, 0, textureCount, 0);
+        textureCount = 0;
+        lastSlot = -1;
+        count = 0;
+    }
+
+
+    /**
+     * Flushes the remaining sprites and uninstalls the shader program
+     * unless objects are left bound (see {@link GLState#setUnbindAfterUse(boolean)}).
+     */
+    public void end()
+    {
+        if (!drawing)
+        {
+            throw new IllegalStateException("SpriteBatch.begin() must be called before end()");
+        }
+
+        flush();
+
+        if (GLState.isUnbindAfterUse())
+        {
+            program.uninstall();
+        }
+
+        drawing = false;
+    }
+
+
+    /**
+     * Returns the number of draw calls issued since the last {@link #begin(Matrix4f)}.
+     *
+     * @return the draw call count
+     */
+    public int getDrawCalls()
+    {
+        return drawCalls;
+    }
+
+
+    /**
+     * Returns the maximum number of sprites drawn per flush.
+     *
+     * @return the batch capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+
+    /**
+     * Deletes the batch resources, including the shader program if the batch created it.
+     */
+    public void delete()
+    {
+        stream.delete();
+        glDeleteBuffers(ebo);
+        glDeleteVertexArrays(vao);
+        GLState.deleteVertexArray(vao);
+
+        if (ownsProgram)
+        {
+            program.delete();
+        }
+    }
+}
@@ -92,6 +92,7 @@ public class Window
         /* Create OpenGL context */
         glfwMakeContextCurrent(handle);
         GL.createCapabilities();
+        GLState.invalidate();
 
 
         /* Enable v-sync */
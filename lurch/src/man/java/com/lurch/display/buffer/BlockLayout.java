@@ -0,0 +1,294 @@
+package com.lurch.display.buffer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes the members of a GLSL uniform or shader storage block and computes
+ * their byte offsets under the std140 or std430 layout rules.
+ *
+ * Members are added in the order they are declared in GLSL:
+ * <pre>
+ * BlockLayout camera = new BlockLayout(BlockLayout.Packing.STD140)
+ *     .add("projection", BlockLayout.Type.MAT4)
+ *     .add("view", BlockLayout.Type.MAT4)
+ *     .add("time", BlockLayout.Type.FLOAT);
+ * </pre>
+ * Nested structs are not supported; flatten them into separate members.
+ */
+public class BlockLayout
+{
+    /**
+     * Block layout rules.
+     */
+    public enum Packing
+    {
+        /**
+         * Uniform block rules: arrays and matrix columns are padded to 16 bytes.
+         */
+        STD140,
+
+        /**
+         * Shader storage rules: arrays and matrix columns use their element alignment.
+         */
+        STD430
+    }
+
+
+    /**
+     * Member types, matrices are column major.
+     * A bindless texture handle is stored as a UVEC2.
+     */
+    public enum Type
+    {
+        FLOAT(1, 1), INT(1, 1), UINT(1, 1),
+        VEC2(2, 1), VEC3(3, 1), VEC4(4, 1),
+        IVEC2(2, 1), IVEC3(3, 1), IVEC4(4, 1),
+        UVEC2(2, 1),
+        MAT3(3, 3), MAT4(4, 4);
+
+
+        /**
+         * Components per column.
+         */
+        private final int rows;
+
+
+        /**
+         * Number of columns, 1 for scalars and vectors.
+         */
+        private final int columns;
+
+
+        Type(int rows, int columns)
+        {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+
+        /**
+         * Base alignment of one column: scalars 4, two components 8, three or four 16.
+         */
+        private int columnAlignment()
+        {
+            return rows == 1 ? 4 : rows == 2 ? 8 : 16;
+        }
+    }
+
+
+    /**
+     * Layout rules of the block.
+     */
+    private final Packing packing;
+
+
+    /**
+     * Members by name, in declaration order.
+     */
+    private final Map<String, Member> members = new LinkedHashMap<>();
+
+
+    /**
+     * End of the last member in bytes.
+     */
+    private int end;
+
+
+    /**
+     * Largest member alignment, the block size is rounded up to it.
+     */
+    private int alignment = 4;
+
+
+    /**
+     * Creates an empty block layout.
+     *
+     * @param packing the layout rules
+     */
+    public BlockLayout(Packing packing)
+    {
+        this.packing = packing;
+    }
+
+
+    /**
+     * Appends a member.
+     *
+     * @param name the member name
+     * @param type the member type
+     * @return this layout
+     */
+    public BlockLayout add(String name, Type type)
+    {
+        return add(name, type, 0);
+    }
+
+
+    /**
+     * Appends a member, or an array of members.
+     *
+     * @param name   the member name
+     * @param type   the element type
+     * @param length the array length, 0 for a single member
+     * @return this layout
+     */
+    public BlockLayout add(String name, Type type, int length)
+    {
+        /* Validate input */
+        if (name == null || type == null || length < 0)
+        {
+            throw new IllegalArgumentException("Invalid block member");
+        }
+
+        if (members.containsKey(name))
+        {
+            throw new IllegalArgumentException("Duplicate block member: " + name);
+        }
+
+
+        /* Matrices and arrays are laid out as arrays of columns / elements */
+        boolean aggregate = type.columns > 1 || length > 0;
+
+        int columnStride = type.columnAlignment();
+        if (aggregate && packing == Packing.STD140)
+        {
+            columnStride = 16;
+        }
+
+        int elementSize = type.columns > 1 ? columnStride * type.columns : type.rows * 4;
+        int memberAlignment = type.columns > 1 || length > 0 ? columnStride : type.columnAlignment();
+        int stride = length > 0 ? roundUp(elementSize, memberAlignment) : elementSize;
+
+        int offset = roundUp(end, memberAlignment);
+        int size = length > 0 ? stride * length : elementSize;
+
+        members.put(name, new Member(offset, size, stride, columnStride, type, Math.max(1, length)));
+
+        end = offset + size;
+        alignment = Math.max(alignment, memberAlignment);
+
+        return this;
+    }
+
+
+    /**
+     * Rounds a value up to a multiple of an alignment.
+     */
+    private static int roundUp(int value, int alignment)
+    {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+
+    /**
+     * Looks up a member.
+     *
+     * @param name the member name
+     * @return the member, or null if the block has no such member
+     */
+    public Member getMember(String name)
+    {
+        return members.get(name);
+    }
+
+
+    /**
+     * Returns the byte offset of a member.
+     *
+     * @param name the member name
+     * @return the offset in bytes, or -1 if the block has no such member
+     */
+    public int getOffset(String name)
+    {
+        Member member = members.get(name);
+        return member != null ? member.offset : -1;
+    }
+
+
+    /**
+     * Returns all members.
+     *
+     * @return an unmodifiable view of the members by name, in declaration order
+     */
+    public Map<String, Member> getMembers()
+    {
+        return Collections.unmodifiableMap(members);
+    }
+
+
+    /**
+     * Returns the block size in bytes, rounded up as the rules require.
+     *
+     * @return the block size
+     */
+    public int getSize()
+    {
+        return roundUp(end, packing == Packing.STD140 ? 16 : alignment);
+    }
+
+
+    /**
+     * Returns the layout rules.
+     *
+     * @return the packing
+     */
+    public Packing getPacking()
+    {
+        return packing;
+    }
+
+
+    /**
+     * The placement of one block member.
+     */
+    public static final class Member
+    {
+        /**
+         * Byte offset within the block.
+         */
+        public final int offset;
+
+
+        /**
+         * Bytes occupied, including array padding.
+         */
+        public final int size;
+
+
+        /**
+         * Bytes between array elements.
+         */
+        public final int stride;
+
+
+        /**
+         * Bytes between matrix columns.
+         */
+        public final int columnStride;
+
+
+        /**
+         * Element type.
+         */
+        public final Type type;
+
+
+        /**
+         * Number of elements, 1 for non-arrays.
+         */
+        public final int length;
+
+
+        private Member(int offset, int size, int stride, int columnStride, Type type, int length)
+        {
+            this.offset = offset;
+            this.size = size;
+            this.stride = stride;
+            this.columnStride = columnStride;
+            this.type = type;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.lurch.display.buffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.*;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * A buffer object for geometry that is rewritten every frame.
+ *
+ * When buffer storage is available (GL 4.4 or ARB_buffer_storage) the buffer is
+ * allocated with glBufferStorage, mapped once persistently and coherently, and
+ * split into {@link #REGIONS} regions used round-robin. Each region is guarded
+ * by a fence so the CPU never writes memory the GPU is still reading.
+ *
+ * On older contexts writes go to a CPU staging buffer which is uploaded with
+ * glBufferSubData after orphaning the storage, and the region offset is always 0.
+ *
+ * Typical use per batch:
+ * <pre>
+ *     ByteBuffer data = stream.map();   // write up to getRegionSize() bytes
+ *     stream.commit(bytesWritten);
+ *     // draw, sourcing vertices from getOffset()
+ *     stream.fence();
+ * </pre>
+ */
+public class StreamingBuffer
+{
+    /**
+     * Number of regions in the ring.
+     * Three allows the CPU to write one region while the GPU may still read the other two.
+     */
+    public static final int REGIONS = 3;
+
+
+    /**
+     * Maximum time to wait for a single fence, in nanoseconds.
+     */
+    private static final long FENCE_TIMEOUT = 1_000_000_000L;
+
+
+    /**
+     * Handle for the buffer object.
+     */
+    private final int handle;
+
+
+    /**
+     * Buffer binding target (e.g., GL_ARRAY_BUFFER).
+     */
+    private final int target;
+
+
+    /**
+     * Size of a single region in bytes.
+     */
+    private final int regionSize;
+
+
+    /**
+     * Whether the buffer is persistently mapped.
+     */
+    private final boolean persistent;
+
+
+    /**
+     * The persistent mapping of the whole buffer, or the CPU staging buffer on the fallback path.
+     */
+    private final ByteBuffer memory;
+
+
+    /**
+     * Fence of the last use of each region, 0 if the region is free.
+     */
+    private final long[] fences = new long[REGIONS];
+
+
+    /**
+     * Index of the region currently being written.
+     */
+    private int region;
+
+
+    /**
+     * Number of times the CPU had to wait for the GPU before writing a region.
+     */
+    private long stalls;
+
+
+    /**
+     * Creates a streaming buffer, using persistent mapping when supported.
+     *
+     * @param target     the buffer binding target (e.g., GL_ARRAY_BUFFER)
+     * @param regionSize the size in bytes available for writing per {@link #map()}
+     */
+    public StreamingBuffer(int target, int regionSize)
+    {
+        this(target, regionSize, isPersistentSupported());
+    }
+
+
+    /**
+     * Creates a streaming buffer.
+     *
+     * @param target     the buffer binding target (e.g., GL_ARRAY_BUFFER)
+     * @param regionSize the size in bytes available for writing per {@link #map()}
+     * @param persistent whether to use a persistent mapping, requires buffer storage support
+     */
+    public StreamingBuffer(int target, int regionSize, boolean persistent)
+    {
+        /* Validate input */
+        if (regionSize <= 0 || (long) regionSize * REGIONS > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Invalid streaming buffer size: " + regionSize);
+        }
+
+        if (persistent && !isPersistentSupported())
+        {
+            throw new IllegalStateException("Persistent mapping requires GL 4.4 or ARB_buffer_storage");
+        }
+
+
+        this.target = target;
+        this.regionSize = regionSize;
+        this.persistent = persistent;
+
+
+        /* Create buffer object */
+        handle = glGenBuffers();
+        glBindBuffer(target, handle);
+
+        if (persistent)
+        {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            long size = (long) regionSize * REGIONS;
+
+            glBufferStorage(target, size, flags);
+            memory = glMapBufferRange(target, 0, size, flags);
+
+            if (memory == null)
+            {
+                glBindBuffer(target, 0);
+                glDeleteBuffers(handle);
+                throw new RuntimeException("Failed to map streaming buffer");
+            }
+        }
+        else
+        {
+            glBufferData(target, regionSize, GL_STREAM_DRAW);
+            memory = MemoryUtil.memAlloc(regionSize);
+        }
+
+        glBindBuffer(target, 0);
+    }
+
+
+    /**
+     * Checks whether the current context supports persistently mapped buffers.
+     *
+     * @return true if glBufferStorage is available
+     */
+    public static boolean isPersistentSupported()
+    {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL44 || caps.GL_ARB_buffer_storage;
+    }
+
+
+    /**
+     * Returns memory for the current region, waiting for the GPU to release it if needed.
+     * The returned buffer starts at position 0 with a limit of {@link #getRegionSize()}.
+     *
+     * @return the writable region memory
+     */
+    public ByteBuffer map()
+    {
+        if (!persistent)
+        {
+            return memory.clear();
+        }
+
+
+        /* Wait for the GPU to finish reading the region */
+        long fence = fences[region];
+        if (fence != 0L)
+        {
+            int status = glClientWaitSync(fence, 0, 0L);
+
+            if (status == GL_TIMEOUT_EXPIRED)
+            {
+                stalls++;
+
+                do
+                {
+                    status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+                }
+                while (status == GL_TIMEOUT_EXPIRED);
+            }
+
+            if (status == GL_WAIT_FAILED)
+            {
+                throw new RuntimeException("Failed to wait for streaming buffer fence");
+            }
+
+            glDeleteSync(fence);
+            fences[region] = 0L;
+        }
+
+        int offset = region * regionSize;
+        return memory.slice(offset, regionSize).order(memory.order());
+    }
+
+
+    /**
+     * Publishes the bytes written into the current region.
+     * On the persistent path the mapping is coherent so nothing needs to be uploaded.
+     *
+     * @param bytes the number of bytes written from the start of the region
+     */
+    public void commit(int bytes)
+    {
+        if (bytes < 0 || bytes > regionSize)
+        {
+            throw new IllegalArgumentException("Invalid commit size: " + bytes);
+        }
+
+        if (persistent)
+        {
+            return;
+        }
+
+
+        /* Orphan the storage so the driver does not stall on pending reads */
+        memory.position(0).limit(bytes);
+
+        glBindBuffer(target, handle);
+        glBufferData(target, regionSize, GL_STREAM_DRAW);
+        glBufferSubData(target, 0, memory);
+        glBindBuffer(target, 0);
+    }
+
+
+    /**
+     * Marks the end of all draws reading the current region and advances to the next one.
+     */
+    public void fence()
+    {
+        if (persistent)
+        {
+            fences[region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            region = (region + 1) % REGIONS;
+        }
+    }
+
+
+    /**
+     * Returns the byte offset of the current region within the buffer object.
+     *
+     * @return the region offset, always 0 on the fallback path
+     */
+    public long getOffset()
+    {
+        return persistent ? (long) region * regionSize : 0L;
+    }
+
+
+    /**
+     * Returns the size of a single region in bytes.
+     *
+     * @return the region size
+     */
+    public int getRegionSize()
+    {
+        return regionSize;
+    }
+
+
+    /**
+     * Returns whether the buffer is persistently mapped.
+     *
+     * @return true on the persistent path, false on the orphaning fallback
+     */
+    public boolean isPersistent()
+    {
+        return persistent;
+    }
+
+
+    /**
+     * Returns the number of times {@link #map()} had to wait for the GPU.
+     *
+     * @return the stall count
+     */
+    public long getStalls()
+    {
+        return stalls;
+    }
+
+
+    /**
+     * Returns the handle of the buffer object.
+     *
+     * @return the buffer handle
+     */
+    public int getHandle()
+    {
+        return handle;
+    }
+
+
+    /**
+     * Deletes the buffer, its fences and any CPU staging memory.
+     */
+    public void delete()
+    {
+        for (int i = 0; i < REGIONS; i++)
+        {
+            if (fences[i] != 0L)
+            {
+                glDeleteSync(fences[i]);
+                fences[i] = 0L;
+            }
+        }
+
+        if (persistent)
+        {
+            glBindBuffer(target, handle);
+            glUnmapBuffer(target);
+            glBindBuffer(target, 0);
+        }
+        else
+        {
+            MemoryUtil.memFree(memory);
+        }
+
+        glDeleteBuffers(handle);
+    }
+}
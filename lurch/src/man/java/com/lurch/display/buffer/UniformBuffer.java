@@ -0,0 +1,319 @@
+package com.lurch.display.buffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
+
+import java.nio.ByteBuffer;
+
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * A uniform or shader storage buffer holding one block shared by many programs,
+ * e.g. camera matrices, time or lights.
+ *
+ * The buffer stays bound to a fixed binding point, and programs connect their
+ * block to it once (see ShaderProgram.bindUniformBlock). Setters write into a
+ * CPU copy laid out by a {@link BlockLayout} and only widen a dirty range;
+ * {@link #upload()} sends that range with a single glBufferSubData, typically
+ * once per frame, instead of one glUniform call per program.
+ */
+public class UniformBuffer
+{
+    /**
+     * Handle for the buffer object.
+     */
+    private final int handle;
+
+
+    /**
+     * Buffer target, GL_UNIFORM_BUFFER or GL_SHADER_STORAGE_BUFFER.
+     */
+    private final int target;
+
+
+    /**
+     * Binding point the buffer is bound to.
+     */
+    private final int binding;
+
+
+    /**
+     * Layout of the block.
+     */
+    private final BlockLayout layout;
+
+
+    /**
+     * CPU copy of the block.
+     */
+    private final ByteBuffer data;
+
+
+    /**
+     * First dirty byte, or the block size when nothing is dirty.
+     */
+    private int dirtyStart;
+
+
+    /**
+     * End of the dirty range.
+     */
+    private int dirtyEnd;
+
+
+    /**
+     * Creates a uniform buffer (std140 layout) and binds it to a binding point.
+     *
+     * @param layout  the layout of the block
+     * @param binding the uniform buffer binding point
+     */
+    public UniformBuffer(BlockLayout layout, int binding)
+    {
+        this(GL_UNIFORM_BUFFER, layout, binding);
+    }
+
+
+    /**
+     * Creates a uniform or shader storage buffer and binds it to a binding point.
+     *
+     * @param target  GL_UNIFORM_BUFFER or GL_SHADER_STORAGE_BUFFER
+     * @param layout  the layout of the block
+     * @param binding the binding point
+     */
+    public UniformBuffer(int target, BlockLayout layout, int binding)
+    {
+        /* Validate input */
+        if (target != GL_UNIFORM_BUFFER && target != GL_SHADER_STORAGE_BUFFER)
+        {
+            throw new IllegalArgumentException("Invalid block buffer target");
+        }
+
+        if (target == GL_UNIFORM_BUFFER && layout.getPacking() != BlockLayout.Packing.STD140)
+        {
+            throw new IllegalArgumentException("Uniform blocks require the std140 layout");
+        }
+
+        if (binding < 0 || layout.getSize() == 0)
+        {
+            throw new IllegalArgumentException("Invalid block buffer binding or empty layout");
+        }
+
+        this.target = target;
+        this.binding = binding;
+        this.layout = layout;
+
+
+        /* Zeroed CPU copy, uploaded as the initial contents */
+        data = MemoryUtil.memCalloc(layout.getSize());
+        dirtyStart = layout.getSize();
+
+        handle = glGenBuffers();
+        glBindBuffer(target, handle);
+        glBufferData(target, data, GL_DYNAMIC_DRAW);
+        glBindBuffer(target, 0);
+
+        glBindBufferBase(target, binding, handle);
+    }
+
+
+    // --- Setters by name --- //
+
+    public void set(String name, float value) {
+        set(offset(name, 0), value);
+    }
+
+    public void set(String name, int value) {
+        set(offset(name, 0), value);
+    }
+
+    public void set(String name, Vector2f vec) {
+        set(offset(name, 0), vec);
+    }
+
+    public void set(String name, Vector3f vec) {
+        set(offset(name, 0), vec);
+    }
+
+    public void set(String name, Vector4f vec) {
+        set(offset(name, 0), vec);
+    }
+
+    public void set(String name, Matrix3f mat) {
+        set(offset(name, 0), mat);
+    }
+
+    public void set(String name, Matrix4f mat) {
+        set(offset(name, 0), mat);
+    }
+
+
+    // --- Array element setters --- //
+
+    public void set(String name, int index, float value) {
+        set(offset(name, index), value);
+    }
+
+    public void set(String name, int index, Vector4f vec) {
+        set(offset(name, index), vec);
+    }
+
+    public void set(String name, int index, Matrix4f mat) {
+        set(offset(name, index), mat);
+    }
+
+
+    // --- Offset based setters --- //
+    //
+    // These skip the name lookup entirely, offsets come from BlockLayout.getOffset.
+    // Writes only touch the CPU copy until the next upload().
+
+    public void set(int offset, float value) {
+        data.putFloat(offset, value);
+        dirty(offset, 4);
+    }
+
+    public void set(int offset, int value) {
+        data.putInt(offset, value);
+        dirty(offset, 4);
+    }
+
+    public void set(int offset, long value) {
+        data.putLong(offset, value);   // A uvec2 or 64-bit handle, low word first
+        dirty(offset, 8);
+    }
+
+    public void set(int offset, Vector2f vec) {
+        vec.get(offset, data);
+        dirty(offset, 8);
+    }
+
+    public void set(int offset, Vector3f vec) {
+        vec.get(offset, data);
+        dirty(offset, 12);
+    }
+
+    public void set(int offset, Vector4f vec) {
+        vec.get(offset, data);
+        dirty(offset, 16);
+    }
+
+    public void set(int offset, Matrix3f mat) {
+        mat.get3x4(offset, data);   // Columns padded to vec4 in both std140 and std430
+        dirty(offset, 48);
+    }
+
+    public void set(int offset, Matrix4f mat) {
+        mat.get(offset, data);
+        dirty(offset, 64);
+    }
+
+
+    /**
+     * Resolves the offset of a member or array element.
+     *
+     * @throws IllegalArgumentException if the block has no such member or the index is out of range
+     */
+    private int offset(String name, int index)
+    {
+        BlockLayout.Member member = layout.getMember(name);
+
+        if (member == null || index < 0 || index >= member.length)
+        {
+            throw new IllegalArgumentException("No block member '" + name + "' at index " + index);
+        }
+
+        return member.offset + index * member.stride;
+    }
+
+
+    /**
+     * Widens the dirty range to cover a write.
+     */
+    private void dirty(int offset, int length)
+    {
+        dirtyStart = Math.min(dirtyStart, offset);
+        dirtyEnd = Math.max(dirtyEnd, offset + length);
+    }
+
+
+    /**
+     * Sends the bytes written since the last upload to the GPU in one call.
+     * Does nothing if nothing changed.
+     */
+    public void upload()
+    {
+        if (dirtyEnd <= dirtyStart)
+        {
+            return;
+        }
+
+        glBindBuffer(target, handle);
+        glBufferSubData(target, dirtyStart, data.slice(dirtyStart, dirtyEnd - dirtyStart));
+        glBindBuffer(target, 0);
+
+        dirtyStart = layout.getSize();
+        dirtyEnd = 0;
+    }
+
+
+    /**
+     * Binds the buffer to its binding point again, e.g. after other code rebound it.
+     */
+    public void bind()
+    {
+        glBindBufferBase(target, binding, handle);
+    }
+
+
+    /**
+     * @return The layout of the block
+     */
+    public BlockLayout getLayout()
+    {
+        return layout;
+    }
+
+
+    /**
+     * @return The binding point
+     */
+    public int getBinding()
+    {
+        return binding;
+    }
+
+
+    /**
+     * @return The buffer target
+     */
+    public int getTarget()
+    {
+        return target;
+    }
+
+
+    /**
+     * @return The buffer handle
+     */
+    public int getHandle()
+    {
+        return handle;
+    }
+
+
+    /**
+     * Deletes the buffer and frees the CPU copy.
+     */
+    public void delete()
+    {
+        glDeleteBuffers(handle);
+        MemoryUtil.memFree(data);
+    }
+}
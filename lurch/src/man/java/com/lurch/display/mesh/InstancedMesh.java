@@ -0,0 +1,250 @@
+package com.lurch.display.mesh;
+
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.glDrawElementsInstanced;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import com.lurch.display.GLState;
+
+/**
+ * A mesh drawn many times in a single draw call.
+ * Extends Mesh with a second vertex buffer holding per-instance attributes:
+ * a model matrix at locations 2 to 5 and a tint at location 6.
+ */
+public class InstancedMesh extends Mesh
+{
+    /**
+     * Floats per instance: 16 (model matrix, column major) + 4 (tint).
+     */
+    public static final int INSTANCE_FLOATS = 20;
+
+
+    /**
+     * Layout of the per-instance attributes, a mat4 occupies one location per column.
+     */
+    private static final VertexLayout INSTANCE_LAYOUT = new VertexLayout
+    (
+        VertexAttribute.floats(2, 4),   // Model matrix column 0
+        VertexAttribute.floats(3, 4),   // Model matrix column 1
+        VertexAttribute.floats(4, 4),   // Model matrix column 2
+        VertexAttribute.floats(5, 4),   // Model matrix column 3
+        VertexAttribute.floats(6, 4)    // Tint
+    );
+
+
+    /**
+     * Handle for the per-instance vertex buffer object.
+     */
+    private final int instanceVbo;
+
+
+    /**
+     * Maximum number of instances the instance buffer can hold.
+     */
+    private final int maxInstances;
+
+
+    /**
+     * Number of instances drawn by {@link #render()}.
+     */
+    private int instanceCount;
+
+
+    /**
+     * Creates an instanced mesh with the specified vertices and indices.
+     *
+     * @param vertices     the vertex data (position and texture coordinates)
+     * @param indices      the index data for drawing the mesh
+     * @param stride       the stride in floats between consecutive vertex attributes
+     * @param maxInstances the maximum number of instances per draw
+     */
+    public InstancedMesh(float[] vertices, int[] indices, int stride, int maxInstances)
+    {
+        this(vertices, indices, VertexLayout.positionUV(stride), maxInstances);
+    }
+
+
+    /**
+     * Creates an instanced mesh from float vertex data described by a layout.
+     * The layout must not use locations 2 to 6, which hold the per-instance attributes.
+     *
+     * @param vertices     the interleaved vertex data
+     * @param indices      the index data for drawing the mesh
+     * @param layout       the layout of a single vertex
+     * @param maxInstances the maximum number of instances per draw
+     */
+    public InstancedMesh(float[] vertices, int[] indices, VertexLayout layout, int maxInstances)
+    {
+        /* Validated before the base mesh creates its GL objects */
+        super(vertices, indices, checkCapacity(layout, maxInstances));
+
+        this.maxInstances = maxInstances;
+
+
+        /* Create per-instance vertex buffer object */
+        GLState.bindVertexArray(getVertexArray());
+
+        instanceVbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, (long) maxInstances * INSTANCE_FLOATS * Float.BYTES, GL_STREAM_DRAW);
+
+
+        /* Model matrix and tint attributes, advanced once per instance */
+        INSTANCE_LAYOUT.apply(0L, 1);
+
+
+        /* Unbind buffers */
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        GLState.bindVertexArray(0);
+    }
+
+
+    /**
+     * Checks the instance capacity, passing the layout through to the base constructor.
+     */
+    private static VertexLayout checkCapacity(VertexLayout layout, int maxInstances)
+    {
+        if (maxInstances <= 0)
+        {
+            throw new IllegalArgumentException("Invalid instance count");
+        }
+
+        return layout;
+    }
+
+
+    /**
+     * Uploads per-instance data, replacing the previous instances.
+     * The buffer is read from its position to its limit and must be direct.
+     *
+     * @param data  the instance data, {@link #INSTANCE_FLOATS} floats per instance
+     * @param count the number of instances in the data
+     */
+    public void setInstances(FloatBuffer data, int count)
+    {
+        if (data == null || !data.isDirect())
+        {
+            throw new IllegalArgumentException("Instance data must be a direct buffer");
+        }
+
+        validateCount(count, data.remaining());
+
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, (long) maxInstances * INSTANCE_FLOATS * Float.BYTES, GL_STREAM_DRAW);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, data.slice().limit(count * INSTANCE_FLOATS));
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        instanceCount = count;
+    }
+
+
+    /**
+     * Uploads per-instance data, replacing the previous instances.
+     * Only the first {@code count} instances of the array are uploaded.
+     *
+     * @param data  the instance data, {@link #INSTANCE_FLOATS} floats per instance
+     * @param count the number of instances in the data
+     */
+    public void setInstances(float[] data, int count)
+    {
+        if (data == null)
+        {
+            throw new IllegalArgumentException("Instance data must not be null");
+        }
+
+        validateCount(count, data.length);
+
+        int floats = count * INSTANCE_FLOATS;
+
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, (long) maxInstances * INSTANCE_FLOATS * Float.BYTES, GL_STREAM_DRAW);
+
+        if (data.length == floats)
+        {
+            glBufferSubData(GL_ARRAY_BUFFER, 0, data);
+        }
+        else
+        {
+            /* Copy the used range, the array overload always uploads the whole array */
+            FloatBuffer range = MemoryUtil.memAllocFloat(floats);
+            glBufferSubData(GL_ARRAY_BUFFER, 0, range.put(data, 0, floats).flip());
+            MemoryUtil.memFree(range);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        instanceCount = count;
+    }
+
+
+    /**
+     * Checks an instance count against the buffer capacity and the supplied data.
+     */
+    private void validateCount(int count, int floats)
+    {
+        if (count < 0 || count > maxInstances || floats < count * INSTANCE_FLOATS)
+        {
+            throw new IllegalArgumentException("Invalid instance count: " + count);
+        }
+    }
+
+
+    /**
+     * Renders all instances using the currently bound shader program.
+     * The vertex array stays bound unless {@link GLState#isUnbindAfterUse()}.
+     */
+    @Override
+    public void render()
+    {
+        if (instanceCount == 0)
+        {
+            return;
+        }
+
+        GLState.bindVertexArray(getVertexArray());
+        glDrawElementsInstanced(GL_TRIANGLES, getIndexCount(), getIndexType(), 0, instanceCount);
+
+        if (GLState.isUnbindAfterUse())
+        {
+            GLState.bindVertexArray(0);
+        }
+    }
+
+
+    /**
+     * Returns the number of instances drawn by {@link #render()}.
+     *
+     * @return the instance count
+     */
+    public int getInstanceCount()
+    {
+        return instanceCount;
+    }
+
+
+    /**
+     * Returns the maximum number of instances per draw.
+     *
+     * @return the instance capacity
+     */
+    public int getMaxInstances()
+    {
+        return maxInstances;
+    }
+
+
+    /**
+     * Deletes the mesh and instance buffer resources.
+     */
+    @Override
+    public void delete()
+    {
+        glDeleteBuffers(instanceVbo);
+        super.delete();
+    }
+}
@@ -1,13 +1,23 @@
 package com.lurch.display.mesh;
 
-import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_SHORT;
 import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import com.lurch.display.GLState;
+
 public class Mesh 
 {
     /**
@@ -34,8 +44,21 @@ public class Mesh
     private final int indexCount;
 
 
+    /**
+     * The type of the indices (GL_UNSIGNED_SHORT or GL_UNSIGNED_INT unless given explicitly).
+     */
+    private final int indexType;
+
+
+    /**
+     * The vertex layout of the mesh.
+     */
+    private final VertexLayout layout;
+
+
     /**
      * Creates a mesh with the specified vertices and indices.
+     * Vertices hold a 2 float position followed by 2 float texture coordinates.
      *
      * @param vertices the vertex data (position and texture coordinates)
      * @param indices  the index data for drawing the mesh
@@ -43,44 +66,110 @@ public class Mesh
      */
     public Mesh(float[] vertices, int[] indices, int stride) 
     {
-        /* Validate input */
-        if (vertices == null || indices == null || stride <= 0 || 
-            vertices.length < stride * 2 || indices.length == 0 || 
-            vertices.length % stride != 0)
-        {
-            throw new IllegalArgumentException("Invalid mesh parameters");
-        }
+        this(vertices, indices, VertexLayout.positionUV(stride));
+    }
 
 
-        /* Set index count */
-        this.indexCount = indices.length;
+    /**
+     * Creates a mesh from float vertex data described by a layout.
+     *
+     * @param vertices the interleaved vertex data
+     * @param indices  the index data for drawing the mesh
+     * @param layout   the layout of a single vertex
+     */
+    public Mesh(float[] vertices, int[] indices, VertexLayout layout)
+    {
+        this(IndexData.of(indices), createVertexBuffer(vertices, layout), layout);
+    }
 
 
-        /* Create vertex array object */
-        vao = glGenVertexArrays();
-        glBindVertexArray(vao);
+    /**
+     * Creates a mesh from packed vertex data described by a layout.
+     * The buffer is read from its position to its limit.
+     *
+     * @param vertices the interleaved vertex data
+     * @param indices  the index data for drawing the mesh
+     * @param layout   the layout of a single vertex
+     */
+    public Mesh(ByteBuffer vertices, int[] indices, VertexLayout layout)
+    {
+        this(IndexData.of(indices), createVertexBuffer(vertices, layout), layout);
+    }
 
 
-        /* Create vertex buffer object */
-        vbo = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+    /**
+     * Creates a mesh from off-heap float vertex data described by a layout.
+     * Both buffers are read from their position to their limit and must be direct.
+     *
+     * @param vertices the interleaved vertex data
+     * @param indices  the index data for drawing the mesh
+     * @param layout   the layout of a single vertex
+     */
+    public Mesh(FloatBuffer vertices, IntBuffer indices, VertexLayout layout)
+    {
+        this(IndexData.of(indices), createVertexBuffer(vertices, layout), layout);
+    }
+
+
+    /**
+     * Creates a mesh from off-heap packed vertex data described by a layout.
+     * Both buffers are read from their position to their limit and must be direct.
+     *
+     * @param vertices the interleaved vertex data
+     * @param indices  the index data for drawing the mesh
+     * @param layout   the layout of a single vertex
+     */
+    public Mesh(ByteBuffer vertices, IntBuffer indices, VertexLayout layout)
+    {
+        this(IndexData.of(indices), createVertexBuffer(vertices, layout), layout);
+    }
+
+
+    /**
+     * Creates a mesh from off-heap data with indices already encoded in the given type.
+     * Both buffers are read from their position to their limit and must be direct.
+     *
+     * @param vertices  the interleaved vertex data
+     * @param indices   the encoded index data
+     * @param indexType the index type (GL_UNSIGNED_BYTE, GL_UNSIGNED_SHORT or GL_UNSIGNED_INT)
+     * @param layout    the layout of a single vertex
+     */
+    public Mesh(ByteBuffer vertices, ByteBuffer indices, int indexType, VertexLayout layout)
+    {
+        this(IndexData.of(indices, indexType), createVertexBuffer(vertices, layout), layout);
+    }
+
+
+    /**
+     * Creates a mesh around an already filled vertex buffer.
+     *
+     * @param indices the validated index data
+     * @param vbo     the vertex buffer object handle
+     * @param layout  the layout of a single vertex
+     */
+    private Mesh(IndexData indices, int vbo, VertexLayout layout)
+    {
+        /* Set mesh fields */
+        this.vbo = vbo;
+        this.layout = layout;
+        this.indexCount = indices.count;
+        this.indexType = indices.type;
+
+
+        /* Create vertex array object */
+        vao = glGenVertexArrays();
+        GLState.bindVertexArray(vao);
 
 
         /* Create index buffer object */
         ebo = glGenBuffers();
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        indices.upload(GL_ELEMENT_ARRAY_BUFFER);
 
 
-        /*  Position attribute (2 floats: x, y) */
-        glVertexAttribPointer(0, 2, GL_FLOAT, false, stride * Float.BYTES, 0);
-        glEnableVertexAttribArray(0);
-
-        
-        /* TexCoord attribute (2 floats: u, v) */
-        glVertexAttribPointer(1, 2, GL_FLOAT, false, stride * Float.BYTES, 2 * Float.BYTES);
-        glEnableVertexAttribArray(1);
+        /* Configure vertex attributes */
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        layout.apply();
 
 
         /* Unbind buffers */
@@ -88,21 +177,153 @@ public class Mesh
 
 
         /* Unbind the vertex array object */
-        glBindVertexArray(0);
+        GLState.bindVertexArray(0);
+    }
+
+
+    /**
+     * Validates float vertex data against a layout and uploads it into a new vertex buffer.
+     *
+     * @return the vertex buffer object handle
+     */
+    private static int createVertexBuffer(float[] vertices, VertexLayout layout)
+    {
+        /* Validate input */
+        if (vertices == null || layout == null || !layout.isFloatOnly() ||
+            vertices.length == 0 || vertices.length % (layout.getStride() / Float.BYTES) != 0)
+        {
+            throw new IllegalArgumentException("Invalid mesh parameters");
+        }
+
+        int vbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        return vbo;
+    }
+
+
+    /**
+     * Validates off-heap float vertex data against a layout and uploads it into a new vertex buffer.
+     *
+     * @return the vertex buffer object handle
+     */
+    private static int createVertexBuffer(FloatBuffer vertices, VertexLayout layout)
+    {
+        /* Validate input */
+        if (vertices == null || layout == null || !vertices.isDirect() || !layout.isFloatOnly() ||
+            vertices.remaining() == 0 || vertices.remaining() % (layout.getStride() / Float.BYTES) != 0)
+        {
+            throw new IllegalArgumentException("Invalid mesh parameters");
+        }
+
+        int vbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        return vbo;
+    }
+
+
+    /**
+     * Validates packed vertex data against a layout and uploads it into a new vertex buffer.
+     *
+     * @return the vertex buffer object handle
+     */
+    private static int createVertexBuffer(ByteBuffer vertices, VertexLayout layout)
+    {
+        /* Validate input */
+        if (vertices == null || layout == null || !vertices.isDirect() ||
+            vertices.remaining() == 0 || vertices.remaining() % layout.getStride() != 0)
+        {
+            throw new IllegalArgumentException("Invalid mesh parameters");
+        }
+
+        int vbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        return vbo;
+    }
+
+
+    /**
+     * Returns the smallest index type able to address the given vertex index.
+     * Byte indices are never chosen automatically: several drivers emulate them
+     * by converting the buffer, and they only save memory on tiny meshes.
+     *
+     * @param maxIndex the largest index in the mesh
+     * @return GL_UNSIGNED_SHORT or GL_UNSIGNED_INT
+     */
+    public static int indexTypeFor(int maxIndex)
+    {
+        return maxIndex >= 0 && maxIndex <= 0xFFFF ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
     }
 
 
     /**
      * Renders the mesh using the currently bound shader program.
+     * The vertex array stays bound unless {@link GLState#isUnbindAfterUse()}.
      */
     public void render() 
     {
-        glBindVertexArray(vao);
-        glDrawElements(GL_TRIANGLES, indexCount, GL_UNSIGNED_INT, 0);
-        glBindVertexArray(0);
+        GLState.bindVertexArray(vao);
+        glDrawElements(GL_TRIANGLES, indexCount, indexType, 0);
+
+        if (GLState.isUnbindAfterUse())
+        {
+            GLState.bindVertexArray(0);
+        }
     }
     
 
+    /**
+     * Returns the handle of the vertex array object.
+     *
+     * @return the vertex array object handle
+     */
+    protected int getVertexArray()
+    {
+        return vao;
+    }
+
+
+    /**
+     * Returns the number of indices in the mesh.
+     *
+     * @return the index count
+     */
+    protected int getIndexCount()
+    {
+        return indexCount;
+    }
+
+
+    /**
+     * Returns the type of the indices in the element buffer.
+     *
+     * @return GL_UNSIGNED_BYTE, GL_UNSIGNED_SHORT or GL_UNSIGNED_INT
+     */
+    protected int getIndexType()
+    {
+        return indexType;
+    }
+
+
+    /**
+     * Returns the vertex layout of the mesh.
+     *
+     * @return the vertex layout
+     */
+    public VertexLayout getLayout()
+    {
+        return layout;
+    }
+
+
     /**
      * Deletes the mesh resources.
      */
@@ -111,5 +332,157 @@ public class Mesh
         glDeleteBuffers(vbo);
         glDeleteBuffers(ebo);
         glDeleteVertexArrays(vao);
+        GLState.deleteVertexArray(vao);
+    }
+
+
+    /**
+     * Validated index data waiting to be uploaded.
+     * Validation allocates nothing, so a failure never leaks native memory or GL objects.
+     */
+    private static final class IndexData
+    {
+        /**
+         * Source indices to narrow on upload, or null for pre-encoded data.
+         */
+        private final IntBuffer source;
+
+
+        /**
+         * Pre-encoded index data, or null when narrowing from {@link #source}.
+         */
+        private final ByteBuffer encoded;
+
+
+        /**
+         * Index type used for drawing.
+         */
+        private final int type;
+
+
+        /**
+         * Number of indices.
+         */
+        private final int count;
+
+
+        private IndexData(IntBuffer source, ByteBuffer encoded, int type, int count)
+        {
+            this.source = source;
+            this.encoded = encoded;
+            this.type = type;
+            this.count = count;
+        }
+
+
+        /**
+         * Validates heap index data and selects the smallest index type.
+         */
+        static IndexData of(int[] indices)
+        {
+            if (indices == null)
+            {
+                throw new IllegalArgumentException("Invalid mesh parameters");
+            }
+
+            return of(IntBuffer.wrap(indices));
+        }
+
+
+        /**
+         * Validates index data and selects the smallest index type.
+         */
+        static IndexData of(IntBuffer indices)
+        {
+            /* Validate input */
+            if (indices == null || indices.remaining() == 0)
+            {
+                throw new IllegalArgumentException("Invalid mesh parameters");
+            }
+
+
+            /* Find the largest index, negative values only fit in unsigned ints */
+            int max = 0;
+            for (int i = indices.position(); i < indices.limit(); i++)
+            {
+                int index = indices.get(i);
+
+                if (index < 0)
+                {
+                    max = -1;
+                    break;
+                }
+
+                max = Math.max(max, index);
+            }
+
+            return new IndexData(indices, null, indexTypeFor(max), indices.remaining());
+        }
+
+
+        /**
+         * Validates pre-encoded index data.
+         */
+        static IndexData of(ByteBuffer indices, int type)
+        {
+            int size;
+            switch (type)
+            {
+                case GL_UNSIGNED_BYTE:  size = 1; break;
+                case GL_UNSIGNED_SHORT: size = 2; break;
+                case GL_UNSIGNED_INT:   size = 4; break;
+                default: throw new IllegalArgumentException("Invalid index type: " + type);
+            }
+
+            if (indices == null || !indices.isDirect() || indices.remaining() == 0 || indices.remaining() % size != 0)
+            {
+                throw new IllegalArgumentException("Invalid mesh parameters");
+            }
+
+            return new IndexData(null, indices, type, indices.remaining() / size);
+        }
+
+
+        /**
+         * Uploads the indices into the buffer bound to the target, narrowing them if needed.
+         */
+        void upload(int target)
+        {
+            /* Pre-encoded or already in the final format */
+            if (encoded != null)
+            {
+                glBufferData(target, encoded, GL_STATIC_DRAW);
+                return;
+            }
+
+            if (type == GL_UNSIGNED_INT && source.isDirect())
+            {
+                glBufferData(target, source, GL_STATIC_DRAW);
+                return;
+            }
+
+
+            /* Narrow or copy into native memory */
+            if (type == GL_UNSIGNED_SHORT)
+            {
+                ShortBuffer narrowed = MemoryUtil.memAllocShort(count);
+
+                for (int i = 0; i < count; i++)
+                {
+                    narrowed.put(i, (short) source.get(source.position() + i));
+                }
+
+                glBufferData(target, narrowed, GL_STATIC_DRAW);
+                MemoryUtil.memFree(narrowed);
+            }
+            else
+            {
+                IntBuffer copy = MemoryUtil.memAllocInt(count);
+                copy.put(0, source, source.position(), count);
+
+                glBufferData(target, copy, GL_STATIC_DRAW);
+                MemoryUtil.memFree(copy);
+            }
+        }
     }
 }
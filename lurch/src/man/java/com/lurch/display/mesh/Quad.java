@@ -1,4 +1,4 @@
-package com.lurch.display.geom;
+package com.lurch.display.mesh;
 
 /**
  * Represents a quad in OpenGL.
@@ -0,0 +1,185 @@
+package com.lurch.display.mesh;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_UNSIGNED_INT_2_10_10_10_REV;
+import static org.lwjgl.opengl.GL30.GL_HALF_FLOAT;
+import static org.lwjgl.opengl.GL33.GL_INT_2_10_10_10_REV;
+
+/**
+ * Describes a single vertex attribute: where it is bound and how its data is stored.
+ */
+public class VertexAttribute
+{
+    /**
+     * Shader attribute location.
+     */
+    public final int location;
+
+
+    /**
+     * Number of components (1 to 4).
+     */
+    public final int size;
+
+
+    /**
+     * OpenGL component type (e.g., GL_FLOAT, GL_HALF_FLOAT, GL_UNSIGNED_BYTE).
+     */
+    public final int type;
+
+
+    /**
+     * Whether integer data is normalized to [0, 1] or [-1, 1] when read as float.
+     */
+    public final boolean normalized;
+
+
+    /**
+     * Whether integer data is read as an integer attribute (ivec/uvec) instead of float.
+     */
+    public final boolean integer;
+
+
+    /**
+     * Creates a vertex attribute.
+     *
+     * @param location   the shader attribute location
+     * @param size       the number of components (1 to 4)
+     * @param type       the OpenGL component type
+     * @param normalized whether integer data is normalized
+     * @param integer    whether integer data is read as an integer attribute
+     */
+    public VertexAttribute(int location, int size, int type, boolean normalized, boolean integer)
+    {
+        /* Validate input */
+        if (location < 0 || size < 1 || size > 4 || (integer && (normalized || !isIntegerType(type))))
+        {
+            throw new IllegalArgumentException("Invalid vertex attribute");
+        }
+
+        if (isPackedType(type) && size != 4)
+        {
+            throw new IllegalArgumentException("Packed 2_10_10_10 attributes must have 4 components");
+        }
+
+        if (!isPackedType(type))
+        {
+            componentBytes(type); // Rejects unknown types
+        }
+
+        this.location = location;
+        this.size = size;
+        this.type = type;
+        this.normalized = normalized;
+        this.integer = integer;
+    }
+
+
+    // --- Common attribute formats --- //
+
+
+    /**
+     * 32-bit float components.
+     */
+    public static VertexAttribute floats(int location, int size)
+    {
+        return new VertexAttribute(location, size, GL_FLOAT, false, false);
+    }
+
+
+    /**
+     * 16-bit float components.
+     */
+    public static VertexAttribute halfFloats(int location, int size)
+    {
+        return new VertexAttribute(location, size, GL_HALF_FLOAT, false, false);
+    }
+
+
+    /**
+     * Unsigned bytes normalized to [0, 1], e.g. RGBA8 colors.
+     */
+    public static VertexAttribute normalizedBytes(int location, int size)
+    {
+        return new VertexAttribute(location, size, GL_UNSIGNED_BYTE, true, false);
+    }
+
+
+    /**
+     * Signed 16-bit components normalized to [-1, 1], e.g. quantized positions.
+     */
+    public static VertexAttribute normalizedShorts(int location, int size)
+    {
+        return new VertexAttribute(location, size, GL_SHORT, true, false);
+    }
+
+
+    /**
+     * Unsigned 16-bit components normalized to [0, 1], e.g. quantized texture coordinates.
+     */
+    public static VertexAttribute normalizedUnsignedShorts(int location, int size)
+    {
+        return new VertexAttribute(location, size, GL_UNSIGNED_SHORT, true, false);
+    }
+
+
+    // --- Methods --- //
+
+
+    /**
+     * Returns the number of bytes the attribute occupies in a vertex.
+     *
+     * @return the attribute size in bytes
+     */
+    public int getByteSize()
+    {
+        if (isPackedType(type))
+        {
+            return 4;
+        }
+
+        return size * componentBytes(type);
+    }
+
+
+    /**
+     * Returns the size of a single component of the given type.
+     *
+     * @param type the OpenGL component type
+     * @return the component size in bytes
+     */
+    private static int componentBytes(int type)
+    {
+        switch (type)
+        {
+            case GL_BYTE: case GL_UNSIGNED_BYTE:
+                return 1;
+
+            case GL_SHORT: case GL_UNSIGNED_SHORT: case GL_HALF_FLOAT:
+                return 2;
+
+            case GL_INT: case GL_UNSIGNED_INT: case GL_FLOAT:
+                return 4;
+
+            case GL_DOUBLE:
+                return 8;
+
+            default:
+                throw new IllegalArgumentException("Unsupported vertex attribute type: " + type);
+        }
+    }
+
+
+    private static boolean isIntegerType(int type)
+    {
+        return type == GL_BYTE  || type == GL_UNSIGNED_BYTE  ||
+               type == GL_SHORT || type == GL_UNSIGNED_SHORT ||
+               type == GL_INT   || type == GL_UNSIGNED_INT;
+    }
+
+
+    private static boolean isPackedType(int type)
+    {
+        return type == GL_INT_2_10_10_10_REV || type == GL_UNSIGNED_INT_2_10_10_10_REV;
+    }
+}
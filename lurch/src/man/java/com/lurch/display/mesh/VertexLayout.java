@@ -0,0 +1,244 @@
+package com.lurch.display.mesh;
+
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+
+/**
+ * Describes how vertex attributes are laid out in an interleaved vertex buffer.
+ * Attributes are packed in the order given, each starting on a 4-byte boundary,
+ * unless the layout is created with explicit offsets for data packed elsewhere.
+ */
+public class VertexLayout
+{
+    /**
+     * Position (2 floats: x, y) at location 0 and texture coordinates (2 floats: u, v) at location 1.
+     * This is the layout of {@link Quad} and {@link UVQuad}.
+     */
+    public static final VertexLayout POSITION_UV = new VertexLayout
+    (
+        VertexAttribute.floats(0, 2),
+        VertexAttribute.floats(1, 2)
+    );
+
+
+    /**
+     * The attributes in buffer order.
+     */
+    private final VertexAttribute[] attributes;
+
+
+    /**
+     * Byte offset of each attribute within a vertex.
+     */
+    private final int[] offsets;
+
+
+    /**
+     * Distance in bytes between consecutive vertices.
+     */
+    private final int stride;
+
+
+    /**
+     * Creates a tightly packed layout.
+     *
+     * @param attributes the attributes in buffer order
+     */
+    public VertexLayout(VertexAttribute... attributes)
+    {
+        this(-1, attributes);
+    }
+
+
+    /**
+     * Creates a layout with an explicit stride, allowing trailing data the attributes do not read.
+     *
+     * @param stride     the distance in bytes between consecutive vertices, or -1 to pack tightly
+     * @param attributes the attributes in buffer order
+     */
+    public VertexLayout(int stride, VertexAttribute... attributes)
+    {
+        /* Validate input */
+        if (attributes == null || attributes.length == 0)
+        {
+            throw new IllegalArgumentException("At least one vertex attribute must be provided");
+        }
+
+
+        /* Compute attribute offsets, aligned to 4 bytes as recommended by the GL */
+        this.attributes = attributes.clone();
+        this.offsets = new int[attributes.length];
+
+        int offset = 0;
+        for (int i = 0; i < attributes.length; i++)
+        {
+            offsets[i] = offset;
+            offset += (attributes[i].getByteSize() + 3) & ~3;
+        }
+
+
+        /* Validate stride */
+        if (stride != -1 && stride < offset)
+        {
+            throw new IllegalArgumentException("Stride " + stride + " is smaller than the attributes (" + offset + " bytes)");
+        }
+
+        this.stride = stride == -1 ? offset : stride;
+    }
+
+
+    /**
+     * Creates a layout with explicit attribute offsets, for vertex data that was not
+     * packed by this class, e.g. attributes out of order, overlapping or with gaps.
+     *
+     * @param stride     the distance in bytes between consecutive vertices
+     * @param offsets    the byte offset of each attribute within a vertex, 4-byte aligned
+     * @param attributes the attributes, in the same order as the offsets
+     */
+    public VertexLayout(int stride, int[] offsets, VertexAttribute... attributes)
+    {
+        /* Validate input */
+        if (attributes == null || attributes.length == 0)
+        {
+            throw new IllegalArgumentException("At least one vertex attribute must be provided");
+        }
+
+        if (offsets == null || offsets.length != attributes.length)
+        {
+            throw new IllegalArgumentException("One offset per vertex attribute must be provided");
+        }
+
+        if (stride <= 0)
+        {
+            throw new IllegalArgumentException("Invalid stride: " + stride);
+        }
+
+
+        /* Every attribute must be aligned and fit within a vertex */
+        for (int i = 0; i < attributes.length; i++)
+        {
+            if (offsets[i] < 0 || (offsets[i] & 3) != 0 || offsets[i] + attributes[i].getByteSize() > stride)
+            {
+                throw new IllegalArgumentException("Invalid offset " + offsets[i] + " for attribute at location " + attributes[i].location);
+            }
+        }
+
+        this.attributes = attributes.clone();
+        this.offsets = offsets.clone();
+        this.stride = stride;
+    }
+
+
+    /**
+     * Creates the legacy layout of {@link #POSITION_UV} with a stride given in floats.
+     *
+     * @param floats the stride in floats between consecutive vertices
+     * @return a position/uv layout with the given stride
+     */
+    public static VertexLayout positionUV(int floats)
+    {
+        if (floats <= 0)
+        {
+            throw new IllegalArgumentException("Invalid stride: " + floats);
+        }
+
+        return new VertexLayout(floats * Float.BYTES, VertexAttribute.floats(0, 2), VertexAttribute.floats(1, 2));
+    }
+
+
+    /**
+     * Configures and enables the attributes on the bound vertex array and array buffer.
+     */
+    public void apply()
+    {
+        apply(0L, 0);
+    }
+
+
+    /**
+     * Configures and enables the attributes on the bound vertex array and array buffer.
+     *
+     * @param baseOffset byte offset of the first vertex within the buffer
+     * @param divisor    the attribute divisor, 0 for per-vertex and 1 for per-instance data
+     */
+    public void apply(long baseOffset, int divisor)
+    {
+        for (int i = 0; i < attributes.length; i++)
+        {
+            VertexAttribute attribute = attributes[i];
+            long pointer = baseOffset + offsets[i];
+
+            if (attribute.integer)
+            {
+                glVertexAttribIPointer(attribute.location, attribute.size, attribute.type, stride, pointer);
+            }
+            else
+            {
+                glVertexAttribPointer(attribute.location, attribute.size, attribute.type, attribute.normalized, stride, pointer);
+            }
+
+            glEnableVertexAttribArray(attribute.location);
+
+            if (divisor != 0)
+            {
+                glVertexAttribDivisor(attribute.location, divisor);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the distance in bytes between consecutive vertices.
+     *
+     * @return the vertex stride
+     */
+    public int getStride()
+    {
+        return stride;
+    }
+
+
+    /**
+     * Returns the byte offset of the attribute at the given index.
+     *
+     * @param index the attribute index in buffer order
+     * @return the attribute offset within a vertex
+     */
+    public int getOffset(int index)
+    {
+        return offsets[index];
+    }
+
+
+    /**
+     * Returns the number of attributes in the layout.
+     *
+     * @return the attribute count
+     */
+    public int getAttributeCount()
+    {
+        return attributes.length;
+    }
+
+
+    /**
+     * Returns whether every attribute is made of 32-bit floats.
+     *
+     * @return true if vertex data can be supplied as a float array
+     */
+    public boolean isFloatOnly()
+    {
+        for (VertexAttribute attribute : attributes)
+        {
+            if (attribute.type != GL_FLOAT)
+            {
+                return false;
+            }
+        }
+
+        return stride % Float.BYTES == 0;
+    }
+}
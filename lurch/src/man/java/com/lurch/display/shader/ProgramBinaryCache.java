@@ -0,0 +1,375 @@
+package com.lurch.display.shader;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * On-disk cache of linked program binaries.
+ *
+ * Programs are keyed by a SHA-256 hash of every stage's type and source plus the
+ * GL vendor, renderer and version, so editing a shader or updating the driver
+ * produces a new key. On a hit the driver's own binary is loaded with
+ * glProgramBinary and no GLSL is compiled; on a miss, or when the driver rejects
+ * a stale binary, the program is compiled from source and its binary is saved
+ * for the next run. Without program binary support every load compiles.
+ *
+ * Must be created and used on the GL thread.
+ */
+public class ProgramBinaryCache
+{
+    /**
+     * Folder holding the cached binaries.
+     */
+    private final Path directory;
+
+
+    /**
+     * Whether the context can retrieve and load program binaries.
+     */
+    private final boolean supported;
+
+
+    /**
+     * GL vendor, renderer and version, mixed into every key.
+     */
+    private final String driver;
+
+
+    /**
+     * Number of programs loaded from a cached binary.
+     */
+    private int hits;
+
+
+    /**
+     * Number of programs compiled from source.
+     */
+    private int misses;
+
+
+    /**
+     * Creates a cache storing binaries in a folder, which is created on first save.
+     *
+     * @param directory the cache folder
+     */
+    public ProgramBinaryCache(String directory)
+    {
+        this.directory = Path.of(directory);
+
+        GLCapabilities caps = GL.getCapabilities();
+        supported = (caps.OpenGL41 || caps.GL_ARB_get_program_binary) && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        driver = glGetString(GL_VENDOR) + "\n" + glGetString(GL_RENDERER) + "\n" + glGetString(GL_VERSION);
+    }
+
+
+    /**
+     * Loads a program from shader source files, inferring each stage from its extension.
+     *
+     * @param names the names of the shader source files
+     * @return the linked program
+     * @throws RuntimeException if a cache miss fails to compile or link
+     */
+    public ShaderProgram load(String... names)
+    {
+        /* Validate input */
+        if (names == null || names.length == 0)
+        {
+            throw new IllegalArgumentException("At least one shader must be provided");
+        }
+
+        int[] types = new int[names.length];
+        ByteBuffer[] sources = new ByteBuffer[names.length];
+
+        for (int i = 0; i < names.length; i++)
+        {
+            types[i] = Shader.typeOf(names[i]);
+            sources[i] = Shader.read(names[i]);
+        }
+
+        return load(types, sources);
+    }
+
+
+    /**
+     * Loads a program from UTF-8 stage sources.
+     *
+     * @param types   the type of each stage (e.g., GL_VERTEX_SHADER)
+     * @param sources the source of each stage, from its position to its limit
+     * @return the linked program
+     * @throws RuntimeException if a cache miss fails to compile or link
+     */
+    public ShaderProgram load(int[] types, ByteBuffer[] sources)
+    {
+        /* Validate input */
+        if (types.length == 0 || types.length != sources.length)
+        {
+            throw new IllegalArgumentException("Every shader stage needs a type and a source");
+        }
+
+        if (!supported)
+        {
+            misses++;
+            return compile(types, sources, false);
+        }
+
+
+        /* Warm start: hand the driver back its own binary */
+        Path file = directory.resolve(key(types, sources) + ".bin");
+
+        ShaderProgram program = loadBinary(file);
+        if (program != null)
+        {
+            hits++;
+            return program;
+        }
+
+
+        /* Cold start or rejected binary: compile, then save for next time */
+        misses++;
+        program = compile(types, sources, true);
+        save(program.getHandle(), file);
+
+        return program;
+    }
+
+
+    /**
+     * Creates a program from a cached binary.
+     *
+     * @return the program, or null if there is no usable binary
+     */
+    private ShaderProgram loadBinary(Path file)
+    {
+        if (!Files.isRegularFile(file))
+        {
+            return null;
+        }
+
+        ByteBuffer data = null;
+
+        try
+        {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length <= 4)
+            {
+                return null;
+            }
+
+            data = MemoryUtil.memAlloc(bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            data.put(bytes).flip();
+
+            int program = glCreateProgram();
+            glProgramBinary(program, data.getInt(0), data.slice(4, bytes.length - 4));
+
+
+            /* Drivers reject binaries from other builds even when the version string matches */
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE)
+            {
+                glDeleteProgram(program);
+                Files.deleteIfExists(file);
+                return null;
+            }
+
+            return new ShaderProgram(program);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        finally
+        {
+            MemoryUtil.memFree(data);
+        }
+    }
+
+
+    /**
+     * Compiles and links a program from source.
+     *
+     * @param retrievable whether to ask the driver to keep the binary retrievable
+     */
+    private static ShaderProgram compile(int[] types, ByteBuffer[] sources, boolean retrievable)
+    {
+        Shader[] shaders = new Shader[types.length];
+        int program = 0;
+
+        try
+        {
+            for (int i = 0; i < types.length; i++)
+            {
+                shaders[i] = new Shader(types[i], sources[i].duplicate());
+            }
+
+            program = glCreateProgram();
+
+            if (retrievable)
+            {
+                glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+            }
+
+            for (Shader shader : shaders)
+            {
+                glAttachShader(program, shader.getHandle());
+            }
+
+            glLinkProgram(program);
+
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE)
+            {
+                throw new RuntimeException("Shader program linking failed:\n" + glGetProgramInfoLog(program));
+            }
+
+            return new ShaderProgram(program);
+        }
+        catch (RuntimeException e)
+        {
+            if (program != 0)
+            {
+                glDeleteProgram(program);
+            }
+
+            throw e;
+        }
+        finally
+        {
+            /* Shaders are flagged for deletion and freed with the program */
+            for (Shader shader : shaders)
+            {
+                if (shader != null)
+                {
+                    shader.delete();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Writes a program's binary to the cache.
+     * Failures are reported and ignored, the cache only speeds up later runs.
+     */
+    private void save(int program, Path file)
+    {
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0)
+        {
+            return;
+        }
+
+        ByteBuffer binary = MemoryUtil.memAlloc(length);
+
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer written = stack.mallocInt(1);
+            IntBuffer format = stack.mallocInt(1);
+
+            glGetProgramBinary(program, written, format, binary);
+
+
+            /* Binary format followed by the driver's blob */
+            byte[] bytes = new byte[4 + written.get(0)];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(format.get(0)).put(binary.limit(written.get(0)));
+
+
+            /* Write beside the target and move, so a crash never leaves a truncated binary */
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "program", ".tmp");
+
+            try
+            {
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally
+            {
+                Files.deleteIfExists(temp);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to write program binary cache: " + e.getMessage());
+        }
+        finally
+        {
+            MemoryUtil.memFree(binary);
+        }
+    }
+
+
+    /**
+     * Hashes the driver identity and every stage into a cache key.
+     */
+    private String key(int[] types, ByteBuffer[] sources)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+
+            for (int i = 0; i < types.length; i++)
+            {
+                ByteBuffer source = sources[i].duplicate();
+
+                digest.update(ByteBuffer.allocate(8).putInt(types[i]).putInt(source.remaining()).flip());
+                digest.update(source);
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+
+    /**
+     * Returns whether the context supports program binaries.
+     *
+     * @return false if every load compiles from source
+     */
+    public boolean isSupported()
+    {
+        return supported;
+    }
+
+
+    /**
+     * Returns the number of programs loaded from a cached binary.
+     *
+     * @return the hit count
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+
+    /**
+     * Returns the number of programs compiled from source.
+     *
+     * @return the miss count
+     */
+    public int getMisses()
+    {
+        return misses;
+    }
+}
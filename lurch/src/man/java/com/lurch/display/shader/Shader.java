@@ -1,12 +1,15 @@
 package com.lurch.display.shader;
 
 import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+
+import org.lwjgl.system.MemoryStack;
+
+import com.lurch.resource.Resources;
 
 /**
  * Represents a shader in OpenGL.
@@ -21,10 +24,9 @@ public class Shader
 
 
     /**
-     * Path to the shader files.
-     * This is used to locate shader source files.
+     * Folder of shader sources, relative to the resource root or a pack.
      */
-    private final String SHADER_FILE = "lurch/src/main/resource/shader/";
+    static final String SHADER_FOLDER = "shader/";
 
 
     /**
@@ -42,62 +44,99 @@ public class Shader
 
 
     /**
-     * Creates a shader of the specified type and reads its source code from a file.
+     * Creates a shader of the specified type from UTF-8 source bytes.
      *
-     * @param type the type of shader (e.g., GL_VERTEX_SHADER, GL_FRAGMENT_SHADER)
-     * @param path the path to the shader source file
+     * @param type   the type of shader (e.g., GL_VERTEX_SHADER, GL_FRAGMENT_SHADER)
+     * @param source the source code of the shader, from its position to its limit
      */
-    public Shader(int type, String name)
+    public Shader(int type, ByteBuffer source)
     {
-        handle = glCreateShader(type);
-
-
-        /* Construct the full path to the shader source file */
-        String path = SHADER_FILE + name;
+        this(type, source, true);
+    }
 
 
-        /* Check if the shader source file exists */
-        if ( !Files.exists(Paths.get(path)) )
-        {
-            throw new RuntimeException("Shader source file not found: " + path);
-        }
-
+    /**
+     * Creates a shader from UTF-8 source bytes, optionally without waiting for the compiler.
+     *
+     * @param type   the type of shader (e.g., GL_VERTEX_SHADER, GL_FRAGMENT_SHADER)
+     * @param source the source code of the shader, from its position to its limit
+     * @param wait   whether to check the compile status now, see {@link #submit()}
+     */
+    private Shader(int type, ByteBuffer source, boolean wait)
+    {
+        handle = glCreateShader(type);
+        setSource(source);
 
-        /* Read the shader source code from the file */
-        try 
+        if (wait)
         {
-            CharSequence source = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
-            setSource(source);
             compile();
-        } 
-        catch (IOException e) 
+        }
+        else
         {
-            throw new RuntimeException("Failed to read shader source from " + path, e);
+            submit();
         }
     }
 
 
+    /**
+     * Creates a shader from a file and submits it without waiting for the compiler.
+     * The compile status must be checked later with {@link #check()}.
+     *
+     * @param name the name of the shader source file
+     * @return the submitted shader
+     */
+    static Shader submit(String name)
+    {
+        return new Shader(typeOf(name), read(name), false);
+    }
+
+
+    /**
+     * Creates a shader of the specified type and reads its source code from a file.
+     * The source is taken from a mounted resource pack when one provides it.
+     * It is compiled as is; use {@link ShaderPreprocessor} to expand includes.
+     *
+     * @param type the type of shader (e.g., GL_VERTEX_SHADER, GL_FRAGMENT_SHADER)
+     * @param name the name of the shader source file
+     */
+    public Shader(int type, String name)
+    {
+        this(type, read(name));
+    }
+
+
+    /**
+     * Creates a shader from a file, inferring its type from the file extension.
+     *
+     * @param name the name of the shader source file
+     */
     public Shader(String name)
     {
-        /* Infer the shader type from file extension */
-        String extension = getExtension(name);
-        ShaderType type = ShaderType.fromExtension(extension);
+        this(typeOf(name), name);
+    }
 
-        this.handle = glCreateShader(type.getGLType());
 
-        String path = SHADER_FILE + name;
+    /**
+     * Reads a shader source file from a mounted resource pack or the shader folder.
+     *
+     * @param name the name of the shader source file
+     * @return the source bytes
+     */
+    static ByteBuffer read(String name)
+    {
+        return Resources.read(SHADER_FOLDER + name);
+    }
 
-        if (!Files.exists(Paths.get(path))) {
-            throw new RuntimeException("Shader source file not found: " + path);
-        }
 
-        try {
-            CharSequence source = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
-            setSource(source);
-            compile();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read shader source from " + path, e);
-        }
+    /**
+     * Infers the OpenGL shader type from a file name's extension.
+     *
+     * @param name the name of the shader source file
+     * @return the shader type (e.g., GL_VERTEX_SHADER)
+     */
+    static int typeOf(String name)
+    {
+        return ShaderType.fromExtension(getExtension(name)).getGLType();
     }
 
 
@@ -107,7 +146,7 @@ public class Shader
      * @param name the name of the shader file
      * @return the file extension (e.g., "vert", "frag")
      */
-    private String getExtension(String name)
+    private static String getExtension(String name)
     {
         /* Validate the file name */
         if (name == null || name.isEmpty()) 
@@ -145,9 +184,30 @@ public class Shader
      * @throws RuntimeException if the shader compilation fails
      */
     public void compile()
+    {
+        submit();
+        check();
+    }
+
+
+    /**
+     * Starts compiling the shader without querying the result.
+     * With parallel shader compilation the driver compiles in the background
+     * until the status is queried by {@link #check()}.
+     */
+    public void submit()
     {
         glCompileShader(handle);
+    }
 
+
+    /**
+     * Checks the result of the last compilation, blocking until it is known.
+     *
+     * @throws RuntimeException if the shader compilation failed
+     */
+    public void check()
+    {
         /* Check for compilation error */
         if ( glGetShaderi(handle, GL_COMPILE_STATUS) == GL_FALSE )
         {
@@ -156,6 +216,18 @@ public class Shader
     }
 
 
+    /**
+     * Checks, without blocking, whether the driver has finished compiling the shader.
+     * Always true when parallel shader compilation is not supported.
+     *
+     * @return true if {@link #check()} will not block
+     */
+    public boolean isComplete()
+    {
+        return !ShaderBatch.isParallelSupported() || glGetShaderi(handle, GL_COMPLETION_STATUS_KHR) == GL_TRUE;
+    }
+
+
     /**
      * Sets the source code for the shader.
      *
@@ -167,6 +239,21 @@ public class Shader
     }
 
 
+    /**
+     * Sets the source code for the shader from UTF-8 bytes.
+     * The bytes are passed to the driver in place, without building a String.
+     *
+     * @param source the source code of the shader, from its position to its limit
+     */
+    public void setSource(ByteBuffer source)
+    {
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            glShaderSource(handle, stack.pointers(source), stack.ints(source.remaining()));
+        }
+    }
+
+
     /**
      * Gets the source code of the shader.
      *
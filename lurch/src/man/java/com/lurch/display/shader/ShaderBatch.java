@@ -0,0 +1,171 @@
+package com.lurch.display.shader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.opengl.ARBParallelShaderCompile;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+
+/**
+ * Submits many shader programs for compilation before checking any of them.
+ *
+ * Querying a compile or link status blocks until the driver is done, so building
+ * programs one at a time serializes every compile. A batch submits all shaders
+ * and links without querying anything; with GL_KHR_parallel_shader_compile (or the
+ * ARB variant) the driver compiles them on its own threads meanwhile. Each program's
+ * status is checked when it is first used, or for all of them by {@link #finish()}.
+ * {@link #isComplete()} polls without blocking, e.g. to keep a loading screen alive.
+ *
+ * Must be used on the GL thread.
+ */
+public class ShaderBatch
+{
+    /**
+     * Programs submitted by this batch.
+     */
+    private final List<ShaderProgram> programs = new ArrayList<>();
+
+
+    /**
+     * Returns whether the context compiles shaders in the background.
+     *
+     * @return true with GL_KHR_parallel_shader_compile or GL_ARB_parallel_shader_compile
+     */
+    public static boolean isParallelSupported()
+    {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.GL_KHR_parallel_shader_compile || caps.GL_ARB_parallel_shader_compile;
+    }
+
+
+    /**
+     * Sets how many threads the driver may use to compile shaders.
+     * Does nothing without parallel shader compilation.
+     *
+     * @param count the thread count, 0 to compile serially, -1 for the driver's maximum
+     */
+    public static void setMaxCompilerThreads(int count)
+    {
+        GLCapabilities caps = GL.getCapabilities();
+
+        if (caps.GL_KHR_parallel_shader_compile)
+        {
+            KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(count);
+        }
+        else if (caps.GL_ARB_parallel_shader_compile)
+        {
+            ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(count);
+        }
+    }
+
+
+    /**
+     * Submits a program built from shader source files, inferring each stage from its extension.
+     * Errors surface when the program is first used or the batch is finished.
+     *
+     * @param names the names of the shader source files
+     * @return the program, usable right away
+     */
+    public ShaderProgram add(String... names)
+    {
+        /* Validate input */
+        if (names == null || names.length == 0)
+        {
+            throw new IllegalArgumentException("At least one shader must be provided");
+        }
+
+        Shader[] shaders = new Shader[names.length];
+
+        for (int i = 0; i < names.length; i++)
+        {
+            shaders[i] = Shader.submit(names[i]);
+        }
+
+        ShaderProgram program = new ShaderProgram(shaders, false);
+        programs.add(program);
+
+        return program;
+    }
+
+
+    /**
+     * Checks, without blocking, whether the driver has finished every program.
+     *
+     * @return true if no program in the batch will wait for the driver on first use
+     */
+    public boolean isComplete()
+    {
+        return getPendingCount() == 0;
+    }
+
+
+    /**
+     * Counts the programs the driver is still working on.
+     *
+     * @return the number of incomplete programs
+     */
+    public int getPendingCount()
+    {
+        int count = 0;
+
+        for (ShaderProgram program : programs)
+        {
+            if (!program.isComplete())
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Waits for every program and checks its status.
+     * All programs are checked even if some fail; the first error is thrown
+     * with the others attached as suppressed exceptions.
+     *
+     * @throws RuntimeException if any shader failed to compile or any program failed to link
+     */
+    public void finish()
+    {
+        RuntimeException error = null;
+
+        for (ShaderProgram program : programs)
+        {
+            try
+            {
+                program.resolve();
+            }
+            catch (RuntimeException e)
+            {
+                if (error == null)
+                {
+                    error = e;
+                }
+                else
+                {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+
+        if (error != null)
+        {
+            throw error;
+        }
+    }
+
+
+    /**
+     * Returns the programs submitted by this batch.
+     *
+     * @return the programs, in submission order
+     */
+    public List<ShaderProgram> getPrograms()
+    {
+        return programs;
+    }
+}
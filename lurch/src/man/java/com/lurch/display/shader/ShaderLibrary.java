@@ -0,0 +1,377 @@
+package com.lurch.display.shader;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.lurch.resource.Resources;
+
+/**
+ * Named shader programs that remember their sources and can be hot reloaded.
+ *
+ * {@link #watch()} starts a background thread watching the shader folder. Changed
+ * files are queued, and {@link #reload()}, called once per frame on the GL thread,
+ * rebuilds every program using them. A rebuilt program replaces the old one inside
+ * the same {@link ShaderProgram} object, so holders need no update; if it fails to
+ * compile the error is printed and the previous program stays in use.
+ *
+ * Sources are expanded by {@link ShaderPreprocessor}, and editing an included
+ * file reloads every program that includes it. Sources provided by a mounted
+ * resource pack take precedence over loose files and are never reloaded.
+ */
+public class ShaderLibrary
+{
+    /**
+     * Time a file must be left alone before it is reloaded, so editors that
+     * save in several writes are only picked up once they are done.
+     */
+    private static final long SETTLE_NANOS = 100_000_000L;
+
+
+    /**
+     * Programs by name, each with the source files it was built from.
+     */
+    private final Map<String, Entry> programs = new LinkedHashMap<>();
+
+
+    /**
+     * Changed shader files, relative to the shader folder, with the time of their last change.
+     */
+    private final Map<String, Long> changed = new ConcurrentHashMap<>();
+
+
+    /**
+     * Watched directories by watch key.
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+
+    /**
+     * File watcher, null until {@link #watch()} is called.
+     */
+    private WatchService watcher;
+
+
+    /**
+     * Thread draining the watcher.
+     */
+    private Thread thread;
+
+
+    /**
+     * Builds a program from shader source files and registers it under a name.
+     * Must be called on the GL thread.
+     *
+     * @param name    the program name
+     * @param shaders the names of the shader source files, stages inferred from their extensions
+     * @return the program
+     * @throws RuntimeException if a shader fails to compile or the program fails to link
+     */
+    public ShaderProgram load(String name, String... shaders)
+    {
+        /* Validate input */
+        if (name == null || shaders == null || shaders.length == 0)
+        {
+            throw new IllegalArgumentException("A program needs a name and at least one shader");
+        }
+
+        if (programs.containsKey(name))
+        {
+            throw new IllegalArgumentException("Duplicate shader program: " + name);
+        }
+
+        Entry entry = new Entry(shaders.clone());
+        entry.program = build(entry);
+        programs.put(name, entry);
+
+        return entry.program;
+    }
+
+
+    /**
+     * Returns a registered program.
+     *
+     * @param name the program name
+     * @return the program, or null if no program has that name
+     */
+    public ShaderProgram get(String name)
+    {
+        Entry entry = programs.get(name);
+        return entry != null ? entry.program : null;
+    }
+
+
+    /**
+     * Starts watching the shader folder and its subfolders for changes.
+     *
+     * @throws IllegalStateException if the folder cannot be watched
+     */
+    public synchronized void watch()
+    {
+        if (watcher != null)
+        {
+            return;
+        }
+
+        Path root = Resources.path(Shader.SHADER_FOLDER);
+
+        try
+        {
+            watcher = root.getFileSystem().newWatchService();
+            register(root);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to watch shader folder " + root, e);
+        }
+
+        final WatchService service = watcher;
+
+        thread = new Thread(() -> poll(service, root), "lurch-shader-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Registers a directory and every directory below it with the watcher.
+     */
+    private synchronized void register(Path directory) throws IOException
+    {
+        if (watcher == null)
+        {
+            return;
+        }
+
+        List<Path> tree;
+
+        try (Stream<Path> walk = Files.walk(directory))
+        {
+            tree = walk.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+
+        for (Path path : tree)
+        {
+            WatchKey key = path.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+
+            synchronized (directories)
+            {
+                directories.put(key, path);
+            }
+        }
+    }
+
+
+    /**
+     * Watcher thread body: records every created or modified file until the watcher closes.
+     */
+    private void poll(WatchService service, Path root)
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = service.take();
+                Path directory;
+
+                synchronized (directories)
+                {
+                    directory = directories.get(key);
+                }
+
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (event.kind() == OVERFLOW || directory == null)
+                    {
+                        continue;
+                    }
+
+                    Path path = directory.resolve((Path) event.context());
+
+                    if (Files.isDirectory(path))
+                    {
+                        /* New folders are watched too, their files arrive as their own events */
+                        if (event.kind() == ENTRY_CREATE)
+                        {
+                            register(path);
+                        }
+
+                        continue;
+                    }
+
+                    changed.put(root.relativize(path).toString().replace('\\', '/'), System.nanoTime());
+                }
+
+                key.reset();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            /* Watching stopped */
+        }
+        catch (IOException e)
+        {
+            System.err.println("Shader watcher stopped: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Rebuilds the programs whose sources changed and have settled.
+     * Must be called on the GL thread, typically once per frame.
+     *
+     * @return the number of programs replaced
+     */
+    public int reload()
+    {
+        if (changed.isEmpty())
+        {
+            return 0;
+        }
+
+
+        /* Take the files that have not been written to for a moment */
+        final long now = System.nanoTime();
+        Set<String> files = new HashSet<>();
+
+        for (Map.Entry<String, Long> change : changed.entrySet())
+        {
+            /* Conditional remove, the file may have changed again meanwhile */
+            if (now - change.getValue() >= SETTLE_NANOS && changed.remove(change.getKey(), change.getValue()))
+            {
+                files.add(change.getKey());
+            }
+        }
+
+
+        /* Rebuild every program using one of them, keeping the old program on failure */
+        int reloaded = 0;
+
+        for (Map.Entry<String, Entry> named : programs.entrySet())
+        {
+            Entry entry = named.getValue();
+
+            if (entry.files.stream().noneMatch(files::contains))
+            {
+                continue;
+            }
+
+            try
+            {
+                entry.program.replace(build(entry));
+                reloaded++;
+            }
+            catch (RuntimeException e)
+            {
+                System.err.println("Failed to reload shader program '" + named.getKey() + "':\n" + e.getMessage());
+            }
+        }
+
+        return reloaded;
+    }
+
+
+    /**
+     * Compiles and links a program from its source files, expanding includes,
+     * and records every file read so changes to included files trigger a reload.
+     */
+    private static ShaderProgram build(Entry entry)
+    {
+        Shader[] shaders = new Shader[entry.shaders.length];
+        Set<String> files = new HashSet<>();
+
+        try
+        {
+            for (int i = 0; i < shaders.length; i++)
+            {
+                ShaderPreprocessor.Result source = ShaderPreprocessor.process(entry.shaders[i], Map.of());
+
+                files.addAll(source.getFiles());
+                shaders[i] = new Shader(Shader.typeOf(entry.shaders[i]), (CharSequence) source.getSource());
+            }
+        }
+        catch (RuntimeException e)
+        {
+            for (Shader shader : shaders)
+            {
+                if (shader != null)
+                {
+                    shader.delete();
+                }
+            }
+
+            throw e;
+        }
+
+        ShaderProgram program = new ShaderProgram(shaders);
+        entry.files = files;
+
+        return program;
+    }
+
+
+    /**
+     * Stops watching and deletes every program.
+     * Must be called on the GL thread.
+     */
+    public void delete()
+    {
+        synchronized (this)
+        {
+            if (watcher != null)
+            {
+                try
+                {
+                    watcher.close();
+                }
+                catch (IOException e)
+                {
+                    /* Nothing left to release */
+                }
+
+                thread.interrupt();
+                watcher = null;
+                thread = null;
+            }
+        }
+
+        for (Entry entry : programs.values())
+        {
+            entry.program.delete();
+        }
+
+        programs.clear();
+        changed.clear();
+    }
+
+
+    /**
+     * A registered program, its stage files and every file they include.
+     */
+    private static final class Entry
+    {
+        private final String[] shaders;
+        private ShaderProgram program;
+        private Set<String> files;
+
+        private Entry(String[] shaders)
+        {
+            this.shaders = shaders;
+        }
+    }
+}
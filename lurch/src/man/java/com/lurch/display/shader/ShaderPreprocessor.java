@@ -0,0 +1,262 @@
+package com.lurch.display.shader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.lurch.resource.ResourcePack;
+import com.lurch.resource.Resources;
+
+/**
+ * Expands #include directives and injects #define lines into GLSL sources.
+ *
+ * Includes are written as {@code #include "lighting.glsl"} and resolve against the
+ * including file's folder, or against the shader folder when they start with '/'.
+ * Every file is included at most once per expansion, so shared headers need no
+ * guards and cycles are harmless. Defines are inserted right after #version, which
+ * must stay the first directive. #line directives keep compiler line numbers
+ * pointing into the original files; the source string number is the file's index
+ * in {@link Result#getFiles()}.
+ */
+public final class ShaderPreprocessor
+{
+    /**
+     * Matches an include line, capturing the included path.
+     */
+    private static final Pattern INCLUDE = Pattern.compile("^\\s*#\\s*include\\s+[\"<]([^\">]+)[\">]\\s*(//.*)?$");
+
+
+    /**
+     * Matches the version line.
+     */
+    private static final Pattern VERSION = Pattern.compile("^\\s*#\\s*version\\b.*$");
+
+
+    private ShaderPreprocessor()
+    {
+    }
+
+
+    /**
+     * Expands a shader source file.
+     *
+     * @param name    the name of the shader source file, relative to the shader folder
+     * @param defines macros to define, in order; a null or empty value defines the name alone
+     * @return the expanded source and the files it was built from
+     * @throws RuntimeException if a file cannot be read
+     */
+    public static Result process(String name, Map<String, String> defines)
+    {
+        StringBuilder out = new StringBuilder();
+        List<String> files = new ArrayList<>();
+
+        expand(normalize(name), defines, out, files);
+
+        return new Result(out.toString(), files);
+    }
+
+
+    /**
+     * Appends one file to the output, recursing into its includes.
+     */
+    private static void expand(String name, Map<String, String> defines, StringBuilder out, List<String> files)
+    {
+        final int index = files.size();
+        files.add(name);
+
+        String[] lines = read(name).split("\r?\n", -1);
+        boolean injected = index != 0;
+
+        if (index != 0)
+        {
+            out.append("#line 1 ").append(index).append('\n');
+        }
+
+
+        /* Without a #version line the defines go first */
+        if (!injected && lines.length > 0 && !hasVersion(lines))
+        {
+            define(defines, out);
+            out.append("#line 1 ").append(index).append('\n');
+            injected = true;
+        }
+
+        for (int i = 0; i < lines.length; i++)
+        {
+            String line = lines[i];
+
+
+            /* Defines follow #version, which must remain the first directive */
+            if (!injected && VERSION.matcher(line).matches())
+            {
+                out.append(line).append('\n');
+                define(defines, out);
+                out.append("#line ").append(i + 2).append(' ').append(index).append('\n');
+                injected = true;
+                continue;
+            }
+
+            Matcher include = INCLUDE.matcher(line);
+            if (include.matches())
+            {
+                String target = resolve(name, include.group(1));
+
+                if (files.contains(target))
+                {
+                    /* Already included, keep the line so numbering is unchanged */
+                    out.append('\n');
+                }
+                else
+                {
+                    expand(target, defines, out, files);
+                    out.append("#line ").append(i + 2).append(' ').append(index).append('\n');
+                }
+
+                continue;
+            }
+
+            out.append(line).append('\n');
+        }
+    }
+
+
+    /**
+     * Appends the #define lines.
+     */
+    private static void define(Map<String, String> defines, StringBuilder out)
+    {
+        for (Map.Entry<String, String> define : defines.entrySet())
+        {
+            out.append("#define ").append(define.getKey());
+
+            if (define.getValue() != null && !define.getValue().isEmpty())
+            {
+                out.append(' ').append(define.getValue());
+            }
+
+            out.append('\n');
+        }
+    }
+
+
+    /**
+     * Checks whether a file has a #version line.
+     */
+    private static boolean hasVersion(String[] lines)
+    {
+        for (String line : lines)
+        {
+            if (VERSION.matcher(line).matches())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Resolves an include path against the including file.
+     */
+    private static String resolve(String from, String path)
+    {
+        if (path.startsWith("/"))
+        {
+            return normalize(path.substring(1));
+        }
+
+        return normalize(Path.of(from).resolveSibling(path).toString());
+    }
+
+
+    /**
+     * Normalizes a name to '/' separators without "." or ".." segments.
+     */
+    private static String normalize(String name)
+    {
+        String normal = Path.of(name).normalize().toString().replace('\\', '/');
+
+        if (normal.startsWith("../"))
+        {
+            throw new IllegalArgumentException("Shader include escapes the shader folder: " + name);
+        }
+
+        return normal;
+    }
+
+
+    /**
+     * Reads a source file from a mounted pack or the shader folder.
+     * Loose files are read rather than mapped so editors can keep saving over them.
+     */
+    private static String read(String name)
+    {
+        String resource = Shader.SHADER_FOLDER + name;
+        ResourcePack pack = Resources.find(resource);
+
+        if (pack != null)
+        {
+            return StandardCharsets.UTF_8.decode(pack.getData(resource)).toString();
+        }
+
+        try
+        {
+            return Files.readString(Resources.path(resource));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Failed to read shader source " + resource, e);
+        }
+    }
+
+
+    /**
+     * An expanded source and the files it was built from.
+     */
+    public static final class Result
+    {
+        /**
+         * Expanded source code.
+         */
+        private final String source;
+
+
+        /**
+         * Files read, the expanded file first, in source string number order.
+         */
+        private final List<String> files;
+
+
+        private Result(String source, List<String> files)
+        {
+            this.source = source;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+
+        /**
+         * @return Expanded source code
+         */
+        public String getSource()
+        {
+            return source;
+        }
+
+
+        /**
+         * @return Files read, relative to the shader folder, the expanded file first
+         */
+        public List<String> getFiles()
+        {
+            return files;
+        }
+    }
+}
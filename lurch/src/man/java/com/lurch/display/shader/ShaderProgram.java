@@ -1,9 +1,21 @@
 package com.lurch.display.shader;
 
 import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glUniformBlockBinding;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BLOCK;
+import static org.lwjgl.opengl.GL43.glGetProgramResourceIndex;
+import static org.lwjgl.opengl.GL43.glShaderStorageBlockBinding;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
 
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.IntConsumer;
 
 import org.joml.Matrix3f;
@@ -13,21 +25,107 @@ import org.joml.Vector3f;
 import org.joml.Vector4f;
 import org.lwjgl.system.MemoryStack;
 
+import com.lurch.display.GLState;
+
 
 public class ShaderProgram 
 {
     /**
      * Handle for the shader program object.
+     * Replaced in place when the program is hot reloaded.
+     */
+    private int handle;
+
+
+    /**
+     * Locations of the active uniforms, keyed by name.
+     * Populated once after linking so lookups never reach the driver.
+     */
+    private final Map<String, Integer> uniforms = new HashMap<>();
+
+
+    /**
+     * CPU-side copy of every active uniform's value as raw 32-bit components, indexed by location.
+     * Float components are stored as their raw int bits so comparisons are exact.
+     */
+    private int[][] shadow = new int[0][];
+
+
+    /**
+     * Whether the shadow slot at a location holds the value currently in the program.
+     * Slots start invalid because GLSL initializers may have set values we do not know.
+     */
+    private boolean[] shadowValid = new boolean[0];
+
+
+    /**
+     * Scratch array used to flatten vectors and matrices before comparing them.
+     */
+    private final float[] scratch = new float[16];
+
+
+    /**
+     * Number of uniform writes sent to the driver.
+     */
+    private long issuedWrites;
+
+
+    /**
+     * Number of uniform writes skipped because the value was unchanged.
+     */
+    private long skippedWrites;
+
+
+    /**
+     * Shaders of a link whose status has not been checked yet, null once checked.
      */
-    private final int handle;
+    private Shader[] pending;
 
 
     /**
-     * Creates a shader program with the specified handle.
+     * Error of a deferred link, rethrown on every later use of the program.
+     */
+    private RuntimeException failure;
+
+
+    /**
+     * Uniform block bindings set through {@link #bindUniformBlock}, re-applied after a reload.
+     */
+    private final Map<String, Integer> uniformBlocks = new HashMap<>();
+
+
+    /**
+     * Storage block bindings set through {@link #bindStorageBlock}, re-applied after a reload.
+     */
+    private final Map<String, Integer> storageBlocks = new HashMap<>();
+
+
+    /**
+     * Whether programs are validated after linking.
+     */
+    private static boolean validation;
+
+
+    /**
+     * Creates a shader program from compiled shaders and links it.
+     * The shaders are deleted once the program is linked.
      *
-     * @param handle the handle of the shader program
+     * @param shaders the shaders to link
      */
     public ShaderProgram(Shader... shaders) 
+    {
+        this(shaders, true);
+    }
+
+
+    /**
+     * Creates a shader program, optionally deferring the link status check
+     * until the program is first used so the driver can link in the background.
+     *
+     * @param shaders the shaders to link, deleted once the status has been checked
+     * @param wait    whether to check the link status now
+     */
+    ShaderProgram(Shader[] shaders, boolean wait)
     {
         /* Validate input */
         if (shaders == null || shaders.length == 0) 
@@ -52,34 +150,240 @@ public class ShaderProgram
         }
 
 
-        /* Link the program */
+        /* Link the program, querying nothing so the driver is free to work asynchronously */
         glLinkProgram(handle);
+        pending = shaders.clone();
 
+        if (wait)
+        {
+            try
+            {
+                resolve();
+            }
+            catch (RuntimeException e)
+            {
+                glDeleteProgram(handle);
+                throw e;
+            }
+        }
+    }
 
-        /* Check for linking error */
-        if (glGetProgrami(handle, GL_LINK_STATUS) == GL_FALSE) 
+
+    /**
+     * Checks the outcome of the link the first time the program is needed,
+     * then validates (when enabled) and introspects it. Does nothing afterwards.
+     *
+     * @throws RuntimeException if a shader failed to compile or the program failed to link
+     */
+    void resolve()
+    {
+        if (pending == null)
         {
-            String infoLog = glGetProgramInfoLog(handle);
-            throw new RuntimeException("Shader program linking failed:\n" + infoLog);
+            if (failure != null)
+            {
+                throw failure;
+            }
+
+            return;
         }
 
+        Shader[] shaders = pending;
+        pending = null;
+
+        try
+        {
+            /* Check for linking error, reporting a compile error instead if one caused it */
+            if (glGetProgrami(handle, GL_LINK_STATUS) == GL_FALSE) 
+            {
+                for (Shader shader : shaders)
+                {
+                    shader.check();
+                }
+
+                String infoLog = glGetProgramInfoLog(handle);
+                throw new RuntimeException("Shader program linking failed:\n" + infoLog);
+            }
+
 
-        /* Validate the program */
-        glValidateProgram(handle);
+            /* Validate the program, opt-in as it stalls on every program */
+            if (validation)
+            {
+                glValidateProgram(handle);
 
+                if (glGetProgrami(handle, GL_VALIDATE_STATUS) == GL_FALSE) 
+                {
+                    String infoLog = glGetProgramInfoLog(handle);
+                    System.err.println("Shader program validation warning:\n" + infoLog);
+                }
+            }
 
-        /* Check for validation error */
-        if (glGetProgrami(handle, GL_VALIDATE_STATUS) == GL_FALSE) 
+
+            /* Cache the locations of all active uniforms */
+            introspect();
+        }
+        catch (RuntimeException e)
         {
-            String infoLog = glGetProgramInfoLog(handle);
-            System.err.println("Shader program validation warning:\n" + infoLog);
+            failure = e;
+            throw e;
         }
+        finally
+        {
+            /* Delete shaders after linking */
+            for (Shader shader : shaders) 
+            {
+                shader.delete();
+            }
+        }
+    }
 
 
-        /* Delete shaders after linking */
-        for (Shader shader : shaders) 
+    /**
+     * Enables or disables glValidateProgram after linking.
+     * Validation costs a driver round trip per program, so it is meant for debug builds.
+     *
+     * @param enabled whether programs linked from now on are validated
+     */
+    public static void setValidation(boolean enabled)
+    {
+        validation = enabled;
+    }
+
+
+    /**
+     * Checks, without blocking, whether the driver has finished linking the program.
+     * Always true when parallel shader compilation is not supported.
+     *
+     * @return true if first use of the program will not wait for the driver
+     */
+    public boolean isComplete()
+    {
+        return pending == null || !ShaderBatch.isParallelSupported() ||
+               glGetProgrami(handle, GL_COMPLETION_STATUS_KHR) == GL_TRUE;
+    }
+
+
+    /**
+     * Wraps a program that has already been linked, e.g. from a program binary.
+     *
+     * @param handle the handle of the linked program
+     */
+    ShaderProgram(int handle)
+    {
+        /* Validate input */
+        if (handle == 0 || glGetProgrami(handle, GL_LINK_STATUS) == GL_FALSE)
+        {
+            throw new IllegalArgumentException("Shader program is not linked");
+        }
+
+        this.handle = handle;
+
+
+        /* Cache the locations of all active uniforms */
+        introspect();
+    }
+
+
+    /**
+     * Queries every active uniform of the linked program and records its location.
+     * Array uniforms are registered under both "name" and "name[i]" for each element.
+     * A zeroed shadow slot sized to the uniform's type is created for every location.
+     */
+    private void introspect()
+    {
+        uniforms.clear();
+
+        int count = glGetProgrami(handle, GL_ACTIVE_UNIFORMS);
+
+
+        /* Components per location, gathered first so the shadow arrays can be sized once */
+        Map<Integer, Integer> components = new HashMap<>();
+
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+
+            for (int i = 0; i < count; i++)
+            {
+                String name = glGetActiveUniform(handle, i, size, type);
+                int location = glGetUniformLocation(handle, name);
+
+
+                /* Members of uniform blocks have no location */
+                if (location == -1)
+                {
+                    continue;
+                }
+
+                int width = componentCount(type.get(0));
+
+                uniforms.put(name, location);
+                components.put(location, width);
+
+
+                /* Register array elements individually, locations are not guaranteed to be contiguous */
+                if (name.endsWith("[0]"))
+                {
+                    String base = name.substring(0, name.length() - 3);
+                    uniforms.put(base, location);
+
+                    for (int element = 1; element < size.get(0); element++)
+                    {
+                        String elementName = base + "[" + element + "]";
+                        int elementLocation = glGetUniformLocation(handle, elementName);
+
+                        uniforms.put(elementName, elementLocation);
+                        components.put(elementLocation, width);
+                    }
+                }
+            }
+        }
+
+
+        /* Allocate shadow storage indexed directly by location */
+        int maxLocation = -1;
+        for (int location : components.keySet())
         {
-            shader.delete();
+            maxLocation = Math.max(maxLocation, location);
+        }
+
+        shadow = new int[maxLocation + 1][];
+        shadowValid = new boolean[maxLocation + 1];
+
+        for (Map.Entry<Integer, Integer> entry : components.entrySet())
+        {
+            shadow[entry.getKey()] = new int[entry.getValue()];
+        }
+    }
+
+
+    /**
+     * Returns the number of 32-bit components a uniform of the given type occupies.
+     *
+     * @param type the GL type reported by glGetActiveUniform
+     * @return the number of components to shadow
+     */
+    private static int componentCount(int type)
+    {
+        switch (type)
+        {
+            case GL_FLOAT_VEC2: case GL_INT_VEC2: case GL_BOOL_VEC2:
+                return 2;
+
+            case GL_FLOAT_VEC3: case GL_INT_VEC3: case GL_BOOL_VEC3:
+                return 3;
+
+            case GL_FLOAT_VEC4: case GL_INT_VEC4: case GL_BOOL_VEC4: case GL_FLOAT_MAT2:
+                return 4;
+
+            case GL_FLOAT_MAT3:
+                return 9;
+
+            case GL_FLOAT_MAT4:
+                return 16;
+
+            default:
+                return 1; // Scalars and samplers
         }
     }
 
@@ -89,7 +393,8 @@ public class ShaderProgram
      */
     public void install()
     {
-        glUseProgram(handle);
+        resolve();
+        GLState.useProgram(handle);
     }
 
 
@@ -98,7 +403,7 @@ public class ShaderProgram
      */
     public void uninstall()
     {
-        glUseProgram(0);
+        GLState.useProgram(0);
     }
 
 
@@ -122,66 +427,333 @@ public class ShaderProgram
 
     /**
      * Returns the location of a uniform variable for this program.
+     * The location is resolved from the table built at link time, so
+     * callers on a hot path should look it up once and keep the int.
      *
      * @param name the name of the uniform variable
      * @return the location of the uniform variable, or -1 if not found
      */
     public int getUniformLocation(String name) 
     {
-        return glGetUniformLocation(handle, name);
+        resolve();
+
+        Integer location = uniforms.get(name);
+        return location != null ? location : -1;
+    }
+
+
+    /**
+     * Checks whether the program has an active uniform with the given name.
+     *
+     * @param name the name of the uniform variable
+     * @return true if the uniform is active, false otherwise
+     */
+    public boolean hasUniform(String name)
+    {
+        resolve();
+        return uniforms.containsKey(name);
+    }
+
+
+    /**
+     * Connects a uniform block of this program to a uniform buffer binding point,
+     * e.g. the binding of a {@link com.lurch.display.buffer.UniformBuffer}.
+     * The binding is program state, so it only needs to be set once.
+     *
+     * @param block   the name of the uniform block
+     * @param binding the binding point
+     * @return true if the program has the block, false otherwise
+     */
+    public boolean bindUniformBlock(String block, int binding)
+    {
+        resolve();
+        uniformBlocks.put(block, binding);
+
+        int index = glGetUniformBlockIndex(handle, block);
+        if (index == GL_INVALID_INDEX)
+        {
+            return false;
+        }
+
+        glUniformBlockBinding(handle, index, binding);
+        return true;
+    }
+
+
+    /**
+     * Connects a shader storage block of this program to a storage buffer binding point.
+     * Requires OpenGL 4.3.
+     *
+     * @param block   the name of the storage block
+     * @param binding the binding point
+     * @return true if the program has the block, false otherwise
+     */
+    public boolean bindStorageBlock(String block, int binding)
+    {
+        resolve();
+        storageBlocks.put(block, binding);
+
+        int index = glGetProgramResourceIndex(handle, GL_SHADER_STORAGE_BLOCK, block);
+        if (index == GL_INVALID_INDEX)
+        {
+            return false;
+        }
+
+        glShaderStorageBlockBinding(handle, index, binding);
+        return true;
     }
 
 
     // --- Scalar uniforms --- //
 
     public void setUniform(String name, int value) {
-        withUniform(name, loc -> glUniform1i(loc, value));
+        setUniform(getUniformLocation(name), value);
     }
 
     public void setUniform(String name, float value) {
-        withUniform(name, loc -> glUniform1f(loc, value));
+        setUniform(getUniformLocation(name), value);
     }
 
     public void setUniform(String name, boolean value) {
-        withUniform(name, loc -> glUniform1i(loc, value ? 1 : 0));
+        setUniform(getUniformLocation(name), value);
     }
 
 
     // --- Vector uniforms --- //
 
     public void setUniform(String name, Vector2f vec) {
-        withUniform(name, loc -> glUniform2f(loc, vec.x, vec.y));
+        setUniform(getUniformLocation(name), vec);
     }
 
     public void setUniform(String name, Vector3f vec) {
-        withUniform(name, loc -> glUniform3f(loc, vec.x, vec.y, vec.z));
+        setUniform(getUniformLocation(name), vec);
     }
 
     public void setUniform(String name, Vector4f vec) {
-        withUniform(name, loc -> glUniform4f(loc, vec.x, vec.y, vec.z, vec.w));
+        setUniform(getUniformLocation(name), vec);
     }
 
 
     // --- Matrix uniforms --- //
 
     public void setUniform(String name, Matrix3f mat) {
-        withUniform(name, loc -> {
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                FloatBuffer buffer = stack.mallocFloat(9);
-                mat.get(buffer);
-                glUniformMatrix3fv(loc, false, buffer);
-            }
-        });
+        setUniform(getUniformLocation(name), mat);
     }
 
     public void setUniform(String name, Matrix4f mat) {
-        withUniform(name, loc -> {
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                FloatBuffer buffer = stack.mallocFloat(16);
-                mat.get(buffer);
-                glUniformMatrix4fv(loc, false, buffer);
+        setUniform(getUniformLocation(name), mat);
+    }
+
+
+    // --- Location based uniforms --- //
+    //
+    // These skip the name lookup entirely. Locations of -1 are ignored,
+    // matching the behaviour of the name based setters for unknown uniforms.
+    // Values equal to the shadowed copy are not sent to the driver.
+
+    public void setUniform(int location, int value) {
+        if (changed(location, value)) glUniform1i(location, value);
+    }
+
+    public void setUniform(int location, float value) {
+        if (changed(location, Float.floatToRawIntBits(value))) glUniform1f(location, value);
+    }
+
+    public void setUniform(int location, boolean value) {
+        setUniform(location, value ? 1 : 0);
+    }
+
+    public void setUniform(int location, Vector2f vec) {
+        if (changed(location, Float.floatToRawIntBits(vec.x), Float.floatToRawIntBits(vec.y))) {
+            glUniform2f(location, vec.x, vec.y);
+        }
+    }
+
+    public void setUniform(int location, Vector3f vec) {
+        scratch[0] = vec.x;
+        scratch[1] = vec.y;
+        scratch[2] = vec.z;
+
+        if (changed(location, scratch, 3)) glUniform3f(location, vec.x, vec.y, vec.z);
+    }
+
+    public void setUniform(int location, Vector4f vec) {
+        scratch[0] = vec.x;
+        scratch[1] = vec.y;
+        scratch[2] = vec.z;
+        scratch[3] = vec.w;
+
+        if (changed(location, scratch, 4)) glUniform4f(location, vec.x, vec.y, vec.z, vec.w);
+    }
+
+    public void setUniform(int location, Matrix3f mat) {
+        mat.get(scratch);
+        if (!changed(location, scratch, 9)) return;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(9);
+            buffer.put(scratch, 0, 9).flip();
+            glUniformMatrix3fv(location, false, buffer);
+        }
+    }
+
+    public void setUniform(int location, Matrix4f mat) {
+        mat.get(scratch);
+        if (!changed(location, scratch, 16)) return;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(16);
+            buffer.put(scratch, 0, 16).flip();
+            glUniformMatrix4fv(location, false, buffer);
+        }
+    }
+
+
+    // --- Shadow state --- //
+
+
+    /**
+     * Compares a single component value against the shadow copy and stores it if different.
+     *
+     * @param location the uniform location
+     * @param bits     the raw bits of the value
+     * @return true if a GL call must be issued, false if it can be skipped
+     */
+    private boolean changed(int location, int bits)
+    {
+        if (location == -1) return false;
+
+        int[] slot = slot(location);
+        if (slot == null) return countIssued();
+
+        if (shadowValid[location] && slot[0] == bits) return countSkipped();
+
+        slot[0] = bits;
+        shadowValid[location] = true;
+        return countIssued();
+    }
+
+
+    /**
+     * Compares a two component value against the shadow copy and stores it if different.
+     *
+     * @param location the uniform location
+     * @param x        the raw bits of the first component
+     * @param y        the raw bits of the second component
+     * @return true if a GL call must be issued, false if it can be skipped
+     */
+    private boolean changed(int location, int x, int y)
+    {
+        if (location == -1) return false;
+
+        int[] slot = slot(location);
+        if (slot == null || slot.length < 2) return countIssued();
+
+        if (shadowValid[location] && slot[0] == x && slot[1] == y) return countSkipped();
+
+        slot[0] = x;
+        slot[1] = y;
+        shadowValid[location] = true;
+        return countIssued();
+    }
+
+
+    /**
+     * Compares a float value of the given length against the shadow copy and stores it if different.
+     *
+     * @param location the uniform location
+     * @param values   the new component values
+     * @param length   the number of components to compare
+     * @return true if a GL call must be issued, false if it can be skipped
+     */
+    private boolean changed(int location, float[] values, int length)
+    {
+        if (location == -1) return false;
+
+        int[] slot = slot(location);
+        if (slot == null || slot.length < length) return countIssued();
+
+        boolean equal = shadowValid[location];
+        for (int i = 0; i < length; i++)
+        {
+            int bits = Float.floatToRawIntBits(values[i]);
+
+            if (slot[i] != bits)
+            {
+                slot[i] = bits;
+                equal = false;
             }
-        });
+        }
+
+        if (equal) return countSkipped();
+
+        shadowValid[location] = true;
+        return countIssued();
+    }
+
+
+    /**
+     * Returns the shadow slot for a location, or null if the location is not an active uniform.
+     */
+    private int[] slot(int location)
+    {
+        return location >= 0 && location < shadow.length ? shadow[location] : null;
+    }
+
+
+    private boolean countIssued()
+    {
+        issuedWrites++;
+        return true;
+    }
+
+
+    private boolean countSkipped()
+    {
+        skippedWrites++;
+        return false;
+    }
+
+
+    /**
+     * Forgets all shadowed values so the next write of every uniform reaches the driver.
+     * Call this after modifying the program's uniforms through raw GL calls.
+     */
+    public void invalidateUniforms()
+    {
+        Arrays.fill(shadowValid, false);
+    }
+
+
+    /**
+     * Returns the number of uniform writes that were sent to the driver.
+     *
+     * @return the issued write count since the last reset
+     */
+    public long getIssuedUniformWrites()
+    {
+        return issuedWrites;
+    }
+
+
+    /**
+     * Returns the number of uniform writes skipped because the value was unchanged.
+     *
+     * @return the skipped write count since the last reset
+     */
+    public long getSkippedUniformWrites()
+    {
+        return skippedWrites;
+    }
+
+
+    /**
+     * Resets the issued and skipped uniform write counters.
+     */
+    public void resetUniformStats()
+    {
+        issuedWrites = 0;
+        skippedWrites = 0;
     }
 
 
@@ -190,9 +762,59 @@ public class ShaderProgram
      */
     public void delete()
     {
+        if (pending != null)
+        {
+            for (Shader shader : pending)
+            {
+                shader.delete();
+            }
+
+            pending = null;
+        }
+
         if (handle != 0) 
         {
             glDeleteProgram(handle);
+            GLState.deleteProgram(handle);
+        }
+    }
+
+
+    /**
+     * Takes over the linked program of another instance and deletes this one's,
+     * so every holder of this object uses the new program from its next install.
+     * Uniform locations may change, so locations kept by callers must be looked up
+     * again; the uniform shadow starts over. Block bindings are carried over.
+     *
+     * @param other a program whose link succeeded, left without a handle
+     * @throws RuntimeException if the other program failed to compile or link
+     */
+    void replace(ShaderProgram other)
+    {
+        other.resolve();
+
+        delete();
+
+        handle = other.handle;
+        failure = null;
+
+        uniforms.clear();
+        uniforms.putAll(other.uniforms);
+        shadow = other.shadow;
+        shadowValid = other.shadowValid;
+
+        other.handle = 0;
+
+
+        /* Block bindings belong to the program object, set them on the new one */
+        for (Map.Entry<String, Integer> block : uniformBlocks.entrySet())
+        {
+            bindUniformBlock(block.getKey(), block.getValue());
+        }
+
+        for (Map.Entry<String, Integer> block : storageBlocks.entrySet())
+        {
+            bindStorageBlock(block.getKey(), block.getValue());
         }
     }
 
@@ -0,0 +1,201 @@
+package com.lurch.display.shader;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Cache of shader program permutations.
+ *
+ * A variant is a set of shader files compiled with a set of defines, e.g. the
+ * sprite shaders with "TINT" or "INSTANCED". Each (files, defines) combination is
+ * preprocessed and compiled once and then returned from the cache, so features can
+ * be specialized at compile time instead of branching on uniforms per fragment.
+ * Defines are order independent: {"A", "B"} and {"B", "A"} are the same variant.
+ *
+ * Must be used on the GL thread.
+ */
+public class ShaderVariants
+{
+    /**
+     * Compiled variants by key.
+     */
+    private final Map<String, ShaderProgram> programs = new HashMap<>();
+
+
+    /**
+     * Binary cache used to skip compilation, or null to always compile.
+     */
+    private final ProgramBinaryCache binaries;
+
+
+    /**
+     * Creates a variant cache compiling every new variant from source.
+     */
+    public ShaderVariants()
+    {
+        this(null);
+    }
+
+
+    /**
+     * Creates a variant cache loading new variants through a program binary cache.
+     *
+     * @param binaries the binary cache, or null to always compile
+     */
+    public ShaderVariants(ProgramBinaryCache binaries)
+    {
+        this.binaries = binaries;
+    }
+
+
+    /**
+     * Returns the program for a set of shader files and defines, compiling it on first request.
+     *
+     * @param defines the defines, each "NAME" or "NAME=VALUE"
+     * @param shaders the names of the shader source files, stages inferred from their extensions
+     * @return the cached program
+     * @throws RuntimeException if the variant fails to compile or link
+     */
+    public ShaderProgram get(Collection<String> defines, String... shaders)
+    {
+        /* Validate input */
+        if (shaders == null || shaders.length == 0)
+        {
+            throw new IllegalArgumentException("At least one shader must be provided");
+        }
+
+
+        /* Sorted defines give every permutation a single key */
+        Map<String, String> sorted = new TreeMap<>();
+        for (String define : defines)
+        {
+            int equals = define.indexOf('=');
+
+            if (equals == 0 || define.isBlank())
+            {
+                throw new IllegalArgumentException("Invalid shader define: '" + define + "'");
+            }
+
+            if (equals < 0)
+            {
+                sorted.put(define.trim(), "");
+            }
+            else
+            {
+                sorted.put(define.substring(0, equals).trim(), define.substring(equals + 1).trim());
+            }
+        }
+
+        String key = String.join("|", shaders) + "#" + sorted;
+
+        ShaderProgram program = programs.get(key);
+        if (program == null)
+        {
+            program = compile(sorted, shaders);
+            programs.put(key, program);
+        }
+
+        return program;
+    }
+
+
+    /**
+     * Preprocesses and builds one variant.
+     */
+    private ShaderProgram compile(Map<String, String> defines, String[] names)
+    {
+        int[] types = new int[names.length];
+        String[] sources = new String[names.length];
+
+        for (int i = 0; i < names.length; i++)
+        {
+            types[i] = Shader.typeOf(names[i]);
+            sources[i] = ShaderPreprocessor.process(names[i], defines).getSource();
+        }
+
+        if (binaries != null)
+        {
+            return load(types, sources);
+        }
+
+        Shader[] shaders = new Shader[names.length];
+
+        try
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                shaders[i] = new Shader(types[i], (CharSequence) sources[i]);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            for (Shader shader : shaders)
+            {
+                if (shader != null)
+                {
+                    shader.delete();
+                }
+            }
+
+            throw e;
+        }
+
+        return new ShaderProgram(shaders);
+    }
+
+
+    /**
+     * Loads a variant through the binary cache, which hashes the expanded sources.
+     */
+    private ShaderProgram load(int[] types, String[] sources)
+    {
+        ByteBuffer[] buffers = new ByteBuffer[sources.length];
+
+        try
+        {
+            for (int i = 0; i < sources.length; i++)
+            {
+                buffers[i] = MemoryUtil.memUTF8(sources[i], false);
+            }
+
+            return binaries.load(types, buffers);
+        }
+        finally
+        {
+            for (ByteBuffer buffer : buffers)
+            {
+                MemoryUtil.memFree(buffer);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of compiled variants.
+     *
+     * @return the variant count
+     */
+    public int size()
+    {
+        return programs.size();
+    }
+
+
+    /**
+     * Deletes every compiled variant.
+     */
+    public void delete()
+    {
+        for (ShaderProgram program : programs.values())
+        {
+            program.delete();
+        }
+
+        programs.clear();
+    }
+}
@@ -0,0 +1,102 @@
+package com.lurch.display.texture;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle to a texture that is loaded in the background.
+ * Until the texture has been uploaded, {@link #get()} returns the placeholder texture.
+ */
+public class AsyncTexture
+{
+    /**
+     * Future completed on the GL thread once the texture is uploaded.
+     */
+    private final CompletableFuture<Texture> future = new CompletableFuture<>();
+
+
+    /**
+     * The uploaded texture, null until ready.
+     */
+    private volatile Texture texture;
+
+
+    /**
+     * Texture returned while loading or after a failure.
+     */
+    private final Texture placeholder;
+
+
+    /**
+     * Creates a handle showing the given placeholder until loading completes.
+     *
+     * @param placeholder the texture to return while loading
+     */
+    AsyncTexture(Texture placeholder)
+    {
+        this.placeholder = placeholder;
+    }
+
+
+    /**
+     * Marks the texture as uploaded.
+     */
+    void complete(Texture texture)
+    {
+        this.texture = texture;
+        future.complete(texture);
+    }
+
+
+    /**
+     * Marks the texture as failed, the placeholder stays in use.
+     */
+    void fail(Throwable cause)
+    {
+        future.completeExceptionally(cause);
+    }
+
+
+    /**
+     * Returns the loaded texture, or the placeholder while loading or after a failure.
+     *
+     * @return the texture to bind
+     */
+    public Texture get()
+    {
+        Texture loaded = texture;
+        return loaded != null ? loaded : placeholder;
+    }
+
+
+    /**
+     * Returns whether the texture has been uploaded.
+     *
+     * @return true if {@link #get()} returns the loaded texture
+     */
+    public boolean isReady()
+    {
+        return texture != null;
+    }
+
+
+    /**
+     * Returns whether loading failed.
+     *
+     * @return true if the texture could not be decoded or uploaded
+     */
+    public boolean isFailed()
+    {
+        return future.isCompletedExceptionally();
+    }
+
+
+    /**
+     * Returns a future completed on the GL thread once the texture is uploaded.
+     *
+     * @return the texture future
+     */
+    public CompletableFuture<Texture> getFuture()
+    {
+        return future;
+    }
+}
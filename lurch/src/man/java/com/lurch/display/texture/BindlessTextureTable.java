@@ -0,0 +1,163 @@
+package com.lurch.display.texture;
+
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.lurch.display.buffer.BlockLayout;
+import com.lurch.display.buffer.UniformBuffer;
+
+/**
+ * A shader storage buffer of resident bindless texture handles (ARB_bindless_texture).
+ *
+ * Textures are added once and addressed by their index, so a single draw can
+ * sample any number of different textures without binding any of them:
+ * <pre>
+ * #extension GL_ARB_bindless_texture : require
+ * layout(std430, binding = 3) readonly buffer Textures { sampler2D u_textures[]; };
+ * ...
+ * color = texture(u_textures[v_texture], v_uv);
+ * </pre>
+ * Indices stay valid until {@link #clear()}. Requires OpenGL 4.3 for storage buffers.
+ */
+public class BindlessTextureTable
+{
+    /**
+     * Storage buffer holding the handles.
+     */
+    private final UniformBuffer buffer;
+
+
+    /**
+     * Index of every texture in the table.
+     */
+    private final Map<Texture, Integer> indices = new IdentityHashMap<>();
+
+
+    /**
+     * Maximum number of textures.
+     */
+    private final int capacity;
+
+
+    /**
+     * Creates an empty table and binds it to a storage buffer binding point.
+     *
+     * @param capacity the maximum number of textures
+     * @param binding  the shader storage buffer binding point
+     * @throws IllegalStateException if bindless textures are unsupported
+     */
+    public BindlessTextureTable(int capacity, int binding)
+    {
+        /* Validate input */
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Invalid bindless table capacity");
+        }
+
+        if (!Texture.isBindlessSupported())
+        {
+            throw new IllegalStateException("Bindless textures are not supported");
+        }
+
+        this.capacity = capacity;
+
+        BlockLayout layout = new BlockLayout(BlockLayout.Packing.STD430)
+            .add("textures", BlockLayout.Type.UVEC2, capacity);
+
+        buffer = new UniformBuffer(GL_SHADER_STORAGE_BUFFER, layout, binding);
+    }
+
+
+    /**
+     * Adds a texture, making its handle resident. Adding a texture again returns its index.
+     * The texture must be fully uploaded and configured, see {@link Texture#getBindlessHandle()}.
+     *
+     * @param texture the texture
+     * @return the index of the texture in the table
+     * @throws IllegalStateException if the table is full
+     */
+    public int add(Texture texture)
+    {
+        Integer index = indices.get(texture);
+        if (index != null)
+        {
+            return index;
+        }
+
+        if (indices.size() == capacity)
+        {
+            throw new IllegalStateException("Bindless texture table is full");
+        }
+
+        int slot = indices.size();
+        buffer.set(slot * Long.BYTES, texture.makeResident());
+        indices.put(texture, slot);
+
+        return slot;
+    }
+
+
+    /**
+     * Returns the index of a texture.
+     *
+     * @param texture the texture
+     * @return the index, or -1 if the texture is not in the table
+     */
+    public int indexOf(Texture texture)
+    {
+        Integer index = indices.get(texture);
+        return index != null ? index : -1;
+    }
+
+
+    /**
+     * Sends the handles added since the last upload to the GPU.
+     * Call once before drawing with newly added textures.
+     */
+    public void upload()
+    {
+        buffer.upload();
+    }
+
+
+    /**
+     * Binds the table to its binding point again.
+     */
+    public void bind()
+    {
+        buffer.bind();
+    }
+
+
+    /**
+     * Removes every texture from the table. The textures stay resident,
+     * since other tables may still use them; delete makes a texture non-resident.
+     */
+    public void clear()
+    {
+        indices.clear();
+    }
+
+
+    /**
+     * Returns the number of textures in the table.
+     *
+     * @return the texture count
+     */
+    public int size()
+    {
+        return indices.size();
+    }
+
+
+    /**
+     * Deletes the storage buffer. The textures are not affected.
+     */
+    public void delete()
+    {
+        buffer.delete();
+        indices.clear();
+    }
+}
@@ -0,0 +1,554 @@
+package com.lurch.display.texture;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.*;
+import static org.lwjgl.opengl.EXTTextureSRGB.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL42.*;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.opengl.KHRTextureCompressionASTCLDR.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A block-compressed image with its mip chain, read from a DDS or KTX2 container.
+ *
+ * The file is memory-mapped and every level is a slice of the mapping, so the
+ * compressed blocks go from the page cache to the driver without being decoded
+ * or copied on the Java side.
+ */
+public class CompressedImage
+{
+    /**
+     * DDS magic number, "DDS " in little endian.
+     */
+    private static final int DDS_MAGIC = 0x20534444;
+
+
+    /**
+     * KTX2 file identifier.
+     */
+    private static final byte[] KTX2_IDENTIFIER =
+    {
+        (byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+
+
+    /**
+     * ASTC block footprints, in the order of both the Vulkan and GL format enums.
+     */
+    private static final int[][] ASTC_BLOCKS =
+    {
+        { 4, 4 }, { 5, 4 }, { 5, 5 }, { 6, 5 }, { 6, 6 }, { 8, 5 }, { 8, 6 },
+        { 8, 8 }, { 10, 5 }, { 10, 6 }, { 10, 8 }, { 10, 10 }, { 12, 10 }, { 12, 12 }
+    };
+
+
+    /**
+     * Compressed OpenGL internal format.
+     */
+    private final int internalFormat;
+
+
+    /**
+     * Width of the base level in pixels.
+     */
+    private final int width;
+
+
+    /**
+     * Height of the base level in pixels.
+     */
+    private final int height;
+
+
+    /**
+     * Compressed data of each level, base level first.
+     */
+    private final ByteBuffer[] levels;
+
+
+    private CompressedImage(int internalFormat, int width, int height, ByteBuffer[] levels)
+    {
+        this.internalFormat = internalFormat;
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+    }
+
+
+    /**
+     * Checks whether a file name has a supported compressed container extension.
+     *
+     * @param name the file name
+     * @return true for .dds and .ktx2 files
+     */
+    public static boolean isCompressedFile(String name)
+    {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".dds") || lower.endsWith(".ktx2");
+    }
+
+
+    /**
+     * Memory-maps and parses a DDS or KTX2 file.
+     *
+     * @param path the file path
+     * @return the compressed image
+     * @throws IllegalArgumentException if the file cannot be read or is not supported
+     */
+    public static CompressedImage read(String path)
+    {
+        ByteBuffer data;
+
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ))
+        {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("Failed to read compressed texture '" + path + "'", e);
+        }
+
+        return read(data, path);
+    }
+
+
+    /**
+     * Parses a DDS or KTX2 container already in memory.
+     *
+     * @param data the container bytes, starting at index 0
+     * @param name the name used in error messages
+     * @return the compressed image, referencing slices of the given buffer
+     * @throws IllegalArgumentException if the container is not supported
+     */
+    public static CompressedImage read(ByteBuffer data, String name)
+    {
+        data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.limit() >= 4 && data.getInt(0) == DDS_MAGIC)
+        {
+            return readDDS(data, name);
+        }
+
+        if (isKTX2(data))
+        {
+            return readKTX2(data, name);
+        }
+
+        throw new IllegalArgumentException("Unknown compressed texture container: " + name);
+    }
+
+
+    // --- DDS --- //
+
+
+    /**
+     * Parses a DDS file, including the DX10 header extension.
+     */
+    private static CompressedImage readDDS(ByteBuffer data, String name)
+    {
+        if (data.limit() < 128 || data.getInt(4) != 124)
+        {
+            throw new IllegalArgumentException("Invalid DDS header: " + name);
+        }
+
+        int height = data.getInt(12);
+        int width = data.getInt(16);
+        int mipCount = Math.max(1, data.getInt(28));
+        int fourCC = data.getInt(84);
+        int caps2 = data.getInt(112);
+
+        if ((caps2 & 0x200) != 0 || (caps2 & 0x200000) != 0)
+        {
+            throw new IllegalArgumentException("Cube map and volume DDS textures are not supported: " + name);
+        }
+
+
+        /* Resolve the format from the FourCC or the DX10 header */
+        int offset = 128;
+        int format;
+
+        if (fourCC == fourCC("DX10"))
+        {
+            if (data.limit() < 148 || data.getInt(140) > 1)
+            {
+                throw new IllegalArgumentException("DDS texture arrays are not supported: " + name);
+            }
+
+            format = dxgiToGL(data.getInt(128), name);
+            offset = 148;
+        }
+        else if (fourCC == fourCC("DXT1")) format = GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+        else if (fourCC == fourCC("DXT3")) format = GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+        else if (fourCC == fourCC("DXT5")) format = GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+        else if (fourCC == fourCC("ATI1") || fourCC == fourCC("BC4U")) format = GL_COMPRESSED_RED_RGTC1;
+        else if (fourCC == fourCC("ATI2") || fourCC == fourCC("BC5U")) format = GL_COMPRESSED_RG_RGTC2;
+        else
+        {
+            throw new IllegalArgumentException("Unsupported DDS pixel format: " + name);
+        }
+
+
+        /* Levels are stored back to back, base level first */
+        ByteBuffer[] levels = new ByteBuffer[mipCount];
+        int w = width, h = height;
+
+        for (int level = 0; level < mipCount; level++)
+        {
+            int size = (int) levelSize(format, w, h);
+            levels[level] = slice(data, offset, size, name);
+
+            offset += size;
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+        }
+
+        return new CompressedImage(format, width, height, levels);
+    }
+
+
+    /**
+     * Maps a DXGI_FORMAT value to a compressed GL internal format.
+     */
+    private static int dxgiToGL(int dxgi, String name)
+    {
+        switch (dxgi)
+        {
+            case 71: return GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;         // BC1_UNORM
+            case 72: return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT;   // BC1_UNORM_SRGB
+            case 74: return GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;         // BC2_UNORM
+            case 75: return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT;   // BC2_UNORM_SRGB
+            case 77: return GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;         // BC3_UNORM
+            case 78: return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT;   // BC3_UNORM_SRGB
+            case 80: return GL_COMPRESSED_RED_RGTC1;                  // BC4_UNORM
+            case 81: return GL_COMPRESSED_SIGNED_RED_RGTC1;           // BC4_SNORM
+            case 83: return GL_COMPRESSED_RG_RGTC2;                   // BC5_UNORM
+            case 84: return GL_COMPRESSED_SIGNED_RG_RGTC2;            // BC5_SNORM
+            case 95: return GL_COMPRESSED_RGB_BPTC_UNSIGNED_FLOAT;    // BC6H_UF16
+            case 96: return GL_COMPRESSED_RGB_BPTC_SIGNED_FLOAT;      // BC6H_SF16
+            case 98: return GL_COMPRESSED_RGBA_BPTC_UNORM;            // BC7_UNORM
+            case 99: return GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;      // BC7_UNORM_SRGB
+
+            default:
+                throw new IllegalArgumentException("Unsupported DXGI format " + dxgi + ": " + name);
+        }
+    }
+
+
+    private static int fourCC(String code)
+    {
+        return code.charAt(0) | code.charAt(1) << 8 | code.charAt(2) << 16 | code.charAt(3) << 24;
+    }
+
+
+    // --- KTX2 --- //
+
+
+    private static boolean isKTX2(ByteBuffer data)
+    {
+        if (data.limit() < KTX2_IDENTIFIER.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < KTX2_IDENTIFIER.length; i++)
+        {
+            if (data.get(i) != KTX2_IDENTIFIER[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Parses a KTX2 file without supercompression.
+     */
+    private static CompressedImage readKTX2(ByteBuffer data, String name)
+    {
+        if (data.limit() < 80)
+        {
+            throw new IllegalArgumentException("Invalid KTX2 header: " + name);
+        }
+
+        int vkFormat = data.getInt(12);
+        int width = data.getInt(20);
+        int height = data.getInt(24);
+        int depth = data.getInt(28);
+        int layers = data.getInt(32);
+        int faces = data.getInt(36);
+        int levelCount = Math.max(1, data.getInt(40));
+        int supercompression = data.getInt(44);
+
+        if (depth > 1 || layers > 1 || faces != 1)
+        {
+            throw new IllegalArgumentException("Only 2D KTX2 textures are supported: " + name);
+        }
+
+        if (supercompression != 0)
+        {
+            throw new IllegalArgumentException("Supercompressed KTX2 textures are not supported: " + name);
+        }
+
+        int format = vkToGL(vkFormat, name);
+
+
+        /* The level index follows the header, base level first */
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+
+        for (int level = 0; level < levelCount; level++)
+        {
+            int entry = 80 + level * 24;
+            long offset = data.getLong(entry);
+            long length = data.getLong(entry + 8);
+
+            if (offset > Integer.MAX_VALUE || length > Integer.MAX_VALUE)
+            {
+                throw new IllegalArgumentException("KTX2 level too large: " + name);
+            }
+
+            levels[level] = slice(data, (int) offset, (int) length, name);
+        }
+
+        return new CompressedImage(format, width, height, levels);
+    }
+
+
+    /**
+     * Maps a VkFormat value to a compressed GL internal format.
+     */
+    private static int vkToGL(int vkFormat, String name)
+    {
+        /* ASTC LDR formats come in UNORM/SRGB pairs for every footprint */
+        if (vkFormat >= 157 && vkFormat <= 184)
+        {
+            int footprint = (vkFormat - 157) / 2;
+            boolean srgb = (vkFormat - 157) % 2 == 1;
+
+            return (srgb ? GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4_KHR : GL_COMPRESSED_RGBA_ASTC_4x4_KHR) + footprint;
+        }
+
+        switch (vkFormat)
+        {
+            case 131: return GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+            case 132: return GL_COMPRESSED_SRGB_S3TC_DXT1_EXT;
+            case 133: return GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+            case 134: return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT;
+            case 135: return GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+            case 136: return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT;
+            case 137: return GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            case 138: return GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT;
+            case 139: return GL_COMPRESSED_RED_RGTC1;
+            case 140: return GL_COMPRESSED_SIGNED_RED_RGTC1;
+            case 141: return GL_COMPRESSED_RG_RGTC2;
+            case 142: return GL_COMPRESSED_SIGNED_RG_RGTC2;
+            case 143: return GL_COMPRESSED_RGB_BPTC_UNSIGNED_FLOAT;
+            case 144: return GL_COMPRESSED_RGB_BPTC_SIGNED_FLOAT;
+            case 145: return GL_COMPRESSED_RGBA_BPTC_UNORM;
+            case 146: return GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;
+            case 147: return GL_COMPRESSED_RGB8_ETC2;
+            case 148: return GL_COMPRESSED_SRGB8_ETC2;
+            case 149: return GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2;
+            case 150: return GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2;
+            case 151: return GL_COMPRESSED_RGBA8_ETC2_EAC;
+            case 152: return GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC;
+            case 153: return GL_COMPRESSED_R11_EAC;
+            case 154: return GL_COMPRESSED_SIGNED_R11_EAC;
+            case 155: return GL_COMPRESSED_RG11_EAC;
+            case 156: return GL_COMPRESSED_SIGNED_RG11_EAC;
+
+            default:
+                throw new IllegalArgumentException("Unsupported KTX2 vkFormat " + vkFormat + ": " + name);
+        }
+    }
+
+
+    // --- Block sizes --- //
+
+
+    /**
+     * Checks whether an internal format is one of the supported compressed formats.
+     *
+     * @param internalFormat the OpenGL internal format
+     * @return true if the format is block compressed
+     */
+    public static boolean isCompressedFormat(int internalFormat)
+    {
+        return blockBytes(internalFormat) != 0;
+    }
+
+
+    /**
+     * Returns the size in bytes of one level of a compressed image.
+     *
+     * @param internalFormat the compressed internal format
+     * @param width          the level width in pixels
+     * @param height         the level height in pixels
+     * @return the level size in bytes
+     */
+    public static long levelSize(int internalFormat, int width, int height)
+    {
+        int bytes = blockBytes(internalFormat);
+
+        if (bytes == 0)
+        {
+            throw new IllegalArgumentException("Not a compressed format: " + internalFormat);
+        }
+
+        int blockWidth = 4, blockHeight = 4;
+
+        if (isASTC(internalFormat))
+        {
+            int[] block = ASTC_BLOCKS[astcFootprint(internalFormat)];
+            blockWidth = block[0];
+            blockHeight = block[1];
+        }
+
+        long blocksX = (width + blockWidth - 1) / blockWidth;
+        long blocksY = (height + blockHeight - 1) / blockHeight;
+
+        return blocksX * blocksY * bytes;
+    }
+
+
+    /**
+     * Returns the bytes per block of a compressed format, or 0 if the format is not compressed.
+     */
+    private static int blockBytes(int internalFormat)
+    {
+        if (isASTC(internalFormat))
+        {
+            return 16;
+        }
+
+        switch (internalFormat)
+        {
+            case GL_COMPRESSED_RGB_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_RGBA_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_SRGB_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_RED_RGTC1:
+            case GL_COMPRESSED_SIGNED_RED_RGTC1:
+            case GL_COMPRESSED_RGB8_ETC2:
+            case GL_COMPRESSED_SRGB8_ETC2:
+            case GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2:
+            case GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2:
+            case GL_COMPRESSED_R11_EAC:
+            case GL_COMPRESSED_SIGNED_R11_EAC:
+                return 8;
+
+            case GL_COMPRESSED_RGBA_S3TC_DXT3_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT:
+            case GL_COMPRESSED_RGBA_S3TC_DXT5_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT:
+            case GL_COMPRESSED_RG_RGTC2:
+            case GL_COMPRESSED_SIGNED_RG_RGTC2:
+            case GL_COMPRESSED_RGB_BPTC_UNSIGNED_FLOAT:
+            case GL_COMPRESSED_RGB_BPTC_SIGNED_FLOAT:
+            case GL_COMPRESSED_RGBA_BPTC_UNORM:
+            case GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM:
+            case GL_COMPRESSED_RGBA8_ETC2_EAC:
+            case GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC:
+            case GL_COMPRESSED_RG11_EAC:
+            case GL_COMPRESSED_SIGNED_RG11_EAC:
+                return 16;
+
+            default:
+                return 0;
+        }
+    }
+
+
+    private static boolean isASTC(int internalFormat)
+    {
+        return astcFootprint(internalFormat) != -1;
+    }
+
+
+    private static int astcFootprint(int internalFormat)
+    {
+        if (internalFormat >= GL_COMPRESSED_RGBA_ASTC_4x4_KHR && internalFormat <= GL_COMPRESSED_RGBA_ASTC_12x12_KHR)
+        {
+            return internalFormat - GL_COMPRESSED_RGBA_ASTC_4x4_KHR;
+        }
+
+        if (internalFormat >= GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4_KHR && internalFormat <= GL_COMPRESSED_SRGB8_ALPHA8_ASTC_12x12_KHR)
+        {
+            return internalFormat - GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4_KHR;
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Returns a bounds-checked slice of the container.
+     */
+    private static ByteBuffer slice(ByteBuffer data, int offset, int length, String name)
+    {
+        if (offset < 0 || length <= 0 || offset > data.limit() - length)
+        {
+            throw new IllegalArgumentException("Truncated compressed texture: " + name);
+        }
+
+        return data.slice(offset, length);
+    }
+
+
+    // --- Accessors --- //
+
+
+    /**
+     * @return Compressed OpenGL internal format
+     */
+    public int getInternalFormat()
+    {
+        return internalFormat;
+    }
+
+
+    /**
+     * @return Width of the base level in pixels
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+
+    /**
+     * @return Height of the base level in pixels
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+
+    /**
+     * @return Number of mip levels in the file
+     */
+    public int getLevelCount()
+    {
+        return levels.length;
+    }
+
+
+    /**
+     * Returns the compressed data of a level.
+     *
+     * @param level the mip level, 0 for the base level
+     * @return the level data
+     */
+    public ByteBuffer getLevel(int level)
+    {
+        return levels[level];
+    }
+}
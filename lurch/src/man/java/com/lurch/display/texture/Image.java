@@ -0,0 +1,174 @@
+package com.lurch.display.texture;
+
+import static org.lwjgl.stb.STBImage.*;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.system.MemoryStack;
+
+/**
+ * Decoded image pixels in native memory.
+ * Decoding touches no OpenGL state, so images can be produced on any thread.
+ */
+public class Image
+{
+    /**
+     * Image width in pixels.
+     */
+    private final int width;
+
+
+    /**
+     * Image height in pixels.
+     */
+    private final int height;
+
+
+    /**
+     * Number of channels per pixel.
+     */
+    private final int channels;
+
+
+    /**
+     * Pixel data, rows are tightly packed.
+     */
+    private ByteBuffer pixels;
+
+
+    /**
+     * Creates an image around decoded pixel data.
+     *
+     * @param width    the image width in pixels
+     * @param height   the image height in pixels
+     * @param channels the number of channels per pixel
+     * @param pixels   the pixel data
+     */
+    Image(int width, int height, int channels, ByteBuffer pixels)
+    {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.pixels = pixels;
+    }
+
+
+    /**
+     * Decodes an image file using STBImage.
+     *
+     * @param path     the path of the image file
+     * @param channels the number of channels to decode into, 0 to keep the file's channels
+     * @return the decoded image
+     * @throws IllegalArgumentException if the image cannot be decoded
+     */
+    public static Image decode(String path, int channels)
+    {
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            /* Prepare buffers to receive image dimensions and channel count */
+            IntBuffer w = stack.mallocInt(1);
+            IntBuffer h = stack.mallocInt(1);
+            IntBuffer c = stack.mallocInt(1);
+
+
+            /* Load image data using STBImage */
+            ByteBuffer data = stbi_load(path, w, h, c, channels);
+
+
+            /* Check for failure */
+            if (data == null)
+            {
+                throw new IllegalArgumentException("Failed to load image '" + path + "': " + stbi_failure_reason());
+            }
+
+            return new Image(w.get(0), h.get(0), channels != 0 ? channels : c.get(0), data);
+        }
+    }
+
+
+    /**
+     * Decodes an encoded image (PNG, JPEG, ...) already in memory using STBImage.
+     *
+     * @param data     the encoded image, from its position to its limit
+     * @param name     the name used in error messages
+     * @param channels the number of channels to decode into, 0 to keep the file's channels
+     * @return the decoded image
+     * @throws IllegalArgumentException if the image cannot be decoded
+     */
+    public static Image decode(ByteBuffer data, String name, int channels)
+    {
+        try (MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer w = stack.mallocInt(1);
+            IntBuffer h = stack.mallocInt(1);
+            IntBuffer c = stack.mallocInt(1);
+
+            ByteBuffer pixels = stbi_load_from_memory(data, w, h, c, channels);
+
+            if (pixels == null)
+            {
+                throw new IllegalArgumentException("Failed to load image '" + name + "': " + stbi_failure_reason());
+            }
+
+            return new Image(w.get(0), h.get(0), channels != 0 ? channels : c.get(0), pixels);
+        }
+    }
+
+
+    /**
+     * Gets the image width.
+     *
+     * @return Image width in pixels
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+
+    /**
+     * Gets the image height.
+     *
+     * @return Image height in pixels
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+
+    /**
+     * Gets the number of channels per pixel.
+     *
+     * @return the channel count
+     */
+    public int getChannels()
+    {
+        return channels;
+    }
+
+
+    /**
+     * Gets the pixel data.
+     *
+     * @return the pixels, or null if the image has been freed
+     */
+    public ByteBuffer getPixels()
+    {
+        return pixels;
+    }
+
+
+    /**
+     * Frees the pixel data (CPU-side).
+     */
+    public void free()
+    {
+        if (pixels != null)
+        {
+            stbi_image_free(pixels);
+            pixels = null;
+        }
+    }
+}
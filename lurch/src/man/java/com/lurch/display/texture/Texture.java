@@ -5,9 +5,16 @@ import java.nio.ByteBuffer;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
 import static org.lwjgl.opengl.GL11.glGenTextures;
-import static org.lwjgl.opengl.GL11.glBindTexture;
 import static org.lwjgl.opengl.GL11.glDeleteTextures;
 import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL13.glCompressedTexImage2D;
+import static org.lwjgl.opengl.ARBBindlessTexture.glGetTextureHandleARB;
+import static org.lwjgl.opengl.ARBBindlessTexture.glMakeTextureHandleNonResidentARB;
+import static org.lwjgl.opengl.ARBBindlessTexture.glMakeTextureHandleResidentARB;
+
+import org.lwjgl.opengl.GL;
+
+import com.lurch.display.GLState;
 
 
 /**
@@ -52,6 +59,24 @@ public class Texture
     private final int format;
 
 
+    /**
+     * Number of mip levels uploaded explicitly.
+     */
+    private int levels = 1;
+
+
+    /**
+     * Bindless handle, 0 until first requested.
+     */
+    private long bindlessHandle;
+
+
+    /**
+     * Whether the bindless handle is resident.
+     */
+    private boolean resident;
+
+
     /**
      * Creates a texture with the specified width, height, target, internal format, and format.
      *
@@ -95,29 +120,176 @@ public class Texture
 
 
     /** 
-     * Binds the texture to the specified texture unit 
-     * @param unit the texture unit to bind to (e.g., 0 for GL_TEXTURE0)
+     * Uploads image data from the bound pixel unpack buffer.
+     * 
+     * @param offset Byte offset of the image data within the pixel unpack buffer
      */
-    public void bind() {
-        glBindTexture(target, handle);
+    public void upload(long offset)
+    {
+        glTexImage2D(GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, GL_UNSIGNED_BYTE, offset);
+    }
+
+
+    /** 
+     * Uploads one mip level of image data.
+     * 
+     * @param level  Mip level, 0 for the base level
+     * @param width  Level width in pixels
+     * @param height Level height in pixels
+     * @param data   ByteBuffer containing the level's pixels
+     */
+    public void upload(int level, int width, int height, ByteBuffer data)
+    {
+        glTexImage2D(target, level, internalFormat, width, height, 0, format, GL_UNSIGNED_BYTE, data);
+        levels = Math.max(levels, level + 1);
+    }
+
+
+    /** 
+     * Uploads one level of block-compressed image data.
+     * The texture must have been created with a compressed internal format.
+     * 
+     * @param level  Mip level, 0 for the base level
+     * @param width  Level width in pixels
+     * @param height Level height in pixels
+     * @param data   ByteBuffer containing the compressed blocks
+     */
+    public void uploadCompressed(int level, int width, int height, ByteBuffer data)
+    {
+        glCompressedTexImage2D(target, level, internalFormat, width, height, 0, data);
+        levels = Math.max(levels, level + 1);
     }
 
 
     /** 
      * Binds the texture to the active texture unit 
      */
+    public void bind() {
+        GLState.bindTexture(target, handle);
+    }
+
+
+    /** 
+     * Binds the texture to the specified texture unit for drawing, using glBindTextureUnit where available.
+     * Uploads and parameters go through {@link #bind()}, which also creates the texture object on first bind.
+     * @param unit the texture unit to bind to (e.g., 0 for GL_TEXTURE0)
+     */
+    public void bind(int unit) {
+        GLState.bindTexture(unit, target, handle);
+    }
+
+
+    /** 
+     * Unbinds the texture target of the active texture unit 
+     */
     public void unbind() {
-        glBindTexture(target, 0);
+        GLState.bindTexture(target, 0);
+    }
+
+
+    /** 
+     * Unbinds the textures of the specified texture unit 
+     * @param unit the texture unit to unbind (e.g., 0 for GL_TEXTURE0)
+     */
+    public void unbind(int unit) {
+        GLState.bindTexture(unit, target, 0);
+    }
+
+
+
+    // --- Bindless textures --- //
+
+    /**
+     * Checks whether the driver supports bindless textures (ARB_bindless_texture).
+     *
+     * @return true if bindless handles are available
+     */
+    public static boolean isBindlessSupported()
+    {
+        return GL.getCapabilities().GL_ARB_bindless_texture;
     }
 
 
+    /**
+     * Returns the 64-bit bindless handle of the texture, creating it on first use.
+     * Once a handle exists the texture's storage and parameters can no longer
+     * change, so upload every level and configure it first.
+     *
+     * @return the bindless handle
+     * @throws IllegalStateException if bindless textures are unsupported or no handle could be created
+     */
+    public long getBindlessHandle()
+    {
+        if (bindlessHandle == 0)
+        {
+            if (!isBindlessSupported())
+            {
+                throw new IllegalStateException("Bindless textures are not supported");
+            }
+
+            bindlessHandle = glGetTextureHandleARB(handle);
+
+            if (bindlessHandle == 0)
+            {
+                throw new IllegalStateException("Failed to create bindless texture handle");
+            }
+        }
+
+        return bindlessHandle;
+    }
+
+
+    /**
+     * Makes the bindless handle resident, so shaders may sample through it.
+     *
+     * @return the bindless handle
+     */
+    public long makeResident()
+    {
+        long bindless = getBindlessHandle();
+
+        if (!resident)
+        {
+            glMakeTextureHandleResidentARB(bindless);
+            resident = true;
+        }
+
+        return bindless;
+    }
+
+
+    /**
+     * Makes the bindless handle non-resident, freeing its slot in the driver's residency list.
+     */
+    public void makeNonResident()
+    {
+        if (resident)
+        {
+            glMakeTextureHandleNonResidentARB(bindlessHandle);
+            resident = false;
+        }
+    }
+
+
+    /**
+     * Checks whether the bindless handle is resident.
+     *
+     * @return true if shaders may sample through the bindless handle
+     */
+    public boolean isResident()
+    {
+        return resident;
+    }
+
 
     /**
      * Release OpenGL resources associated with this texture.
      */
     public void delete() 
     {
+        makeNonResident();
         glDeleteTextures(handle);
+        GLState.deleteTexture(handle);
     }
 
 
@@ -143,6 +315,40 @@ public class Texture
     }
 
 
+    /**
+     * Gets the texture target.
+     *
+     * @return Texture target (e.g., GL_TEXTURE_2D)
+     */
+    public int getTarget()
+    {
+        return target;
+    }
+
+
+    /**
+     * Gets the internal format.
+     *
+     * @return Internal format (e.g., GL_RGBA8)
+     */
+    public int getInternalFormat()
+    {
+        return internalFormat;
+    }
+
+
+    /**
+     * Gets the number of mip levels uploaded explicitly.
+     * Levels generated by glGenerateMipmap are not counted.
+     *
+     * @return Number of uploaded mip levels
+     */
+    public int getLevels()
+    {
+        return levels;
+    }
+
+
     /**
      * Gets the texture handle.
      *
@@ -0,0 +1,419 @@
+package com.lurch.display.texture;
+
+import static org.lwjgl.opengl.GL11.GL_UNPACK_ALIGNMENT;
+import static org.lwjgl.opengl.GL11.glPixelStorei;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Packs many small images into a few large texture pages.
+ *
+ * Images are added with {@link #add(String, Image)} and packed by {@link #pack(TextureConfig)}
+ * using a skyline bottom-left packer, tallest images first. Each image is surrounded
+ * by a border of its own edge pixels (extrusion), so filtering at region edges never
+ * samples a neighbouring image. Sprites drawn from the same page share one texture
+ * bind and can be batched together.
+ *
+ * Images remain owned by the caller and may be freed once the atlas is packed.
+ */
+public class TextureAtlas
+{
+    /**
+     * Width and height of every page in pixels.
+     */
+    private final int pageSize;
+
+
+    /**
+     * Extruded border around each image in pixels.
+     */
+    private final int padding;
+
+
+    /**
+     * Images waiting to be packed, in insertion order.
+     */
+    private final Map<String, Image> pending = new LinkedHashMap<>();
+
+
+    /**
+     * Packed regions by name.
+     */
+    private final Map<String, TextureRegion> regions = new HashMap<>();
+
+
+    /**
+     * Packed page textures.
+     */
+    private final List<Texture> pages = new ArrayList<>();
+
+
+    /**
+     * Creates an empty atlas.
+     *
+     * @param pageSize Width and height of every page in pixels
+     * @param padding  Extruded border around each image in pixels
+     */
+    public TextureAtlas(int pageSize, int padding)
+    {
+        /* Validate input */
+        if (pageSize <= 0 || padding < 0 || pageSize <= 2 * padding)
+        {
+            throw new IllegalArgumentException("Invalid atlas parameters");
+        }
+
+        this.pageSize = pageSize;
+        this.padding = padding;
+    }
+
+
+    /**
+     * Adds an image to be packed.
+     *
+     * @param name  Name used to look up the region
+     * @param image Decoded image, must fit in a page with its padding
+     */
+    public void add(String name, Image image)
+    {
+        /* Validate input */
+        if (name == null || image == null || image.getPixels() == null)
+        {
+            throw new IllegalArgumentException("Invalid atlas image");
+        }
+
+        if (image.getWidth() + 2 * padding > pageSize || image.getHeight() + 2 * padding > pageSize)
+        {
+            throw new IllegalArgumentException("Image '" + name + "' does not fit in a " + pageSize + " pixel atlas page");
+        }
+
+        if (pending.containsKey(name) || regions.containsKey(name))
+        {
+            throw new IllegalArgumentException("Duplicate atlas image: " + name);
+        }
+
+        pending.put(name, image);
+    }
+
+
+    /**
+     * Packs all added images into pages and uploads them.
+     * Images must have as many channels as the configuration decodes.
+     * Must be called on the GL thread.
+     *
+     * @param config Texture configuration of the pages
+     */
+    public void pack(TextureConfig config)
+    {
+        /* Tallest first, then widest, gives the skyline the least waste */
+        List<Map.Entry<String, Image>> sorted = new ArrayList<>(pending.entrySet());
+        sorted.sort((a, b) ->
+        {
+            int byHeight = Integer.compare(b.getValue().getHeight(), a.getValue().getHeight());
+            return byHeight != 0 ? byHeight : Integer.compare(b.getValue().getWidth(), a.getValue().getWidth());
+        });
+
+
+        /* Place every image on the first page with room for it */
+        List<Page> packed = new ArrayList<>();
+
+        try
+        {
+            for (Map.Entry<String, Image> entry : sorted)
+            {
+                Image image = entry.getValue();
+
+                if (image.getChannels() != config.channels)
+                {
+                    throw new IllegalArgumentException("Image '" + entry.getKey() + "' has " + image.getChannels() +
+                                                       " channels, expected " + config.channels);
+                }
+
+                int w = image.getWidth() + 2 * padding;
+                int h = image.getHeight() + 2 * padding;
+
+                Page page = null;
+                int[] position = null;
+
+                for (Page candidate : packed)
+                {
+                    position = candidate.skyline.insert(w, h);
+                    if (position != null)
+                    {
+                        page = candidate;
+                        break;
+                    }
+                }
+
+                if (page == null)
+                {
+                    page = new Page(pageSize, config.channels);
+                    packed.add(page);
+                    position = page.skyline.insert(w, h);
+                }
+
+                blit(image, page, position[0] + padding, position[1] + padding);
+                page.names.add(entry.getKey());
+                page.rects.add(new int[] { position[0] + padding, position[1] + padding, image.getWidth(), image.getHeight() });
+            }
+
+
+            /* Upload pages and create regions */
+            for (Page page : packed)
+            {
+                Texture texture = new Texture(pageSize, pageSize, config.target, config.internalFormat, config.format);
+
+                texture.bind();
+                glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+                texture.upload(page.pixels);
+                glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+                config.apply();
+                texture.unbind();
+
+                pages.add(texture);
+
+                for (int i = 0; i < page.names.size(); i++)
+                {
+                    int[] rect = page.rects.get(i);
+                    regions.put(page.names.get(i), new TextureRegion(texture, rect[0], rect[1], rect[2], rect[3]));
+                }
+            }
+
+            pending.clear();
+        }
+        finally
+        {
+            for (Page page : packed)
+            {
+                MemoryUtil.memFree(page.pixels);
+            }
+        }
+    }
+
+
+    /**
+     * Copies an image into a page and extrudes its edge pixels into the padding.
+     */
+    private void blit(Image image, Page page, int x, int y)
+    {
+        final int channels = page.channels;
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int rowBytes = width * channels;
+        final int pageRowBytes = pageSize * channels;
+
+        ByteBuffer source = image.getPixels();
+        ByteBuffer target = page.pixels;
+
+        for (int row = -padding; row < height + padding; row++)
+        {
+            int sourceRow = Math.min(Math.max(row, 0), height - 1);
+            int targetOffset = (y + row) * pageRowBytes + x * channels;
+
+
+            /* Image row, or the nearest edge row inside the padding */
+            target.put(targetOffset, source, sourceRow * rowBytes, rowBytes);
+
+
+            /* Extrude the first and last pixels of the row sideways */
+            for (int p = 1; p <= padding; p++)
+            {
+                for (int c = 0; c < channels; c++)
+                {
+                    target.put(targetOffset - p * channels + c, source.get(sourceRow * rowBytes + c));
+                    target.put(targetOffset + rowBytes + (p - 1) * channels + c, source.get(sourceRow * rowBytes + rowBytes - channels + c));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns a packed region by name.
+     *
+     * @param name Name the image was added with
+     *
+     * @return The region, or null if no such image was packed
+     */
+    public TextureRegion getRegion(String name)
+    {
+        return regions.get(name);
+    }
+
+
+    /**
+     * @return Packed page textures
+     */
+    public List<Texture> getPages()
+    {
+        return pages;
+    }
+
+
+    /**
+     * Deletes all page textures.
+     */
+    public void delete()
+    {
+        for (Texture page : pages)
+        {
+            page.delete();
+        }
+
+        pages.clear();
+        regions.clear();
+    }
+
+
+    /**
+     * A page being packed: its pixels and the images placed on it.
+     */
+    private static final class Page
+    {
+        private final Skyline skyline;
+        private final ByteBuffer pixels;
+        private final int channels;
+        private final List<String> names = new ArrayList<>();
+        private final List<int[]> rects = new ArrayList<>();
+
+        private Page(int size, int channels)
+        {
+            this.skyline = new Skyline(size);
+            this.pixels = MemoryUtil.memCalloc(size * size * channels);
+            this.channels = channels;
+        }
+    }
+
+
+    /**
+     * Skyline bottom-left rectangle packer.
+     * The skyline is a list of horizontal segments covering the page width;
+     * rectangles are placed on the segment giving the lowest top edge.
+     */
+    private static final class Skyline
+    {
+        /**
+         * Segments as { x, y, width }, ordered by x.
+         */
+        private final List<int[]> segments = new ArrayList<>();
+
+        private final int size;
+
+        private Skyline(int size)
+        {
+            this.size = size;
+            segments.add(new int[] { 0, 0, size });
+        }
+
+
+        /**
+         * Places a rectangle and raises the skyline under it.
+         *
+         * @return { x, y } of the placed rectangle, or null if it does not fit
+         */
+        private int[] insert(int width, int height)
+        {
+            int bestIndex = -1, bestX = 0, bestY = 0, bestTop = Integer.MAX_VALUE, bestWaste = Integer.MAX_VALUE;
+
+            for (int i = 0; i < segments.size(); i++)
+            {
+                int x = segments.get(i)[0];
+                if (x + width > size)
+                {
+                    break;
+                }
+
+
+                /* Resting height is the highest segment under the rectangle */
+                int y = 0, waste = 0, remaining = width;
+                for (int j = i; remaining > 0; j++)
+                {
+                    int[] segment = segments.get(j);
+                    y = Math.max(y, segment[1]);
+                    remaining -= segment[2];
+                }
+
+                if (y + height > size)
+                {
+                    continue;
+                }
+
+                remaining = width;
+                for (int j = i; remaining > 0; j++)
+                {
+                    int[] segment = segments.get(j);
+                    waste += (y - segment[1]) * Math.min(remaining, segment[2]);
+                    remaining -= segment[2];
+                }
+
+                if (y + height < bestTop || (y + height == bestTop && waste < bestWaste))
+                {
+                    bestIndex = i;
+                    bestX = x;
+                    bestY = y;
+                    bestTop = y + height;
+                    bestWaste = waste;
+                }
+            }
+
+            if (bestIndex == -1)
+            {
+                return null;
+            }
+
+
+            /* Insert the new segment and trim the ones it covers */
+            segments.add(bestIndex, new int[] { bestX, bestTop, width });
+
+            int end = bestX + width;
+            int i = bestIndex + 1;
+            while (i < segments.size())
+            {
+                int[] segment = segments.get(i);
+
+                if (segment[0] >= end)
+                {
+                    break;
+                }
+
+                int overlap = end - segment[0];
+                if (overlap >= segment[2])
+                {
+                    segments.remove(i);
+                }
+                else
+                {
+                    segment[0] += overlap;
+                    segment[2] -= overlap;
+                    break;
+                }
+            }
+
+
+            /* Merge neighbours of equal height */
+            for (int j = 0; j < segments.size() - 1; )
+            {
+                int[] a = segments.get(j);
+                int[] b = segments.get(j + 1);
+
+                if (a[1] == b[1])
+                {
+                    a[2] += b[2];
+                    segments.remove(j + 1);
+                }
+                else
+                {
+                    j++;
+                }
+            }
+
+            return new int[] { bestX, bestY };
+        }
+    }
+}
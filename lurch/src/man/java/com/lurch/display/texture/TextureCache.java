@@ -0,0 +1,354 @@
+package com.lurch.display.texture;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL21.GL_SRGB8;
+import static org.lwjgl.opengl.GL21.GL_SRGB8_ALPHA8;
+import static org.lwjgl.opengl.GL30.*;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shares loaded textures between users and keeps them within a VRAM budget.
+ *
+ * Textures are keyed on {@link TextureConfig#cacheKey(String)}, so loading the
+ * same file with the same configuration twice returns the same texture. Each
+ * {@link #acquire(String, TextureConfig)} must be matched by a {@link #release(Texture)}.
+ * Released textures stay cached until the estimated memory of all cached
+ * textures exceeds the budget, at which point the least recently used
+ * unreferenced textures are deleted. Referenced textures are never evicted,
+ * so the budget can be exceeded while they are in use.
+ *
+ * Must be used on the GL thread.
+ */
+public class TextureCache
+{
+    /**
+     * Cached textures in least to most recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    /**
+     * Cached textures by identity, for release.
+     */
+    private final Map<Texture, Entry> byTexture = new IdentityHashMap<>();
+
+
+    /**
+     * Memory budget in bytes.
+     */
+    private long budget;
+
+
+    /**
+     * Estimated memory of all cached textures in bytes.
+     */
+    private long usage;
+
+
+    /**
+     * Number of acquisitions served from the cache.
+     */
+    private long hits;
+
+
+    /**
+     * Number of acquisitions that had to load the texture.
+     */
+    private long misses;
+
+
+    /**
+     * Creates a texture cache.
+     *
+     * @param budget Memory budget in bytes
+     */
+    public TextureCache(long budget)
+    {
+        setBudget(budget);
+    }
+
+
+    /**
+     * Acquires a texture with default parameters, loading it if it is not cached.
+     *
+     * @param name File name of the texture
+     * 
+     * @return The shared texture
+     */
+    public Texture acquire(String name)
+    {
+        return acquire(name, TextureConfig.DEFAULT);
+    }
+
+
+    /**
+     * Acquires a texture, loading it if it is not cached.
+     *
+     * @param name   File name of the texture
+     * @param config Texture configuration
+     * 
+     * @return The shared texture
+     */
+    public Texture acquire(String name, TextureConfig config)
+    {
+        String key = config.cacheKey(name);
+        Entry entry = entries.get(key);
+
+        if (entry != null)
+        {
+            hits++;
+            entry.references++;
+            return entry.texture;
+        }
+
+
+        /* Load and register the texture */
+        misses++;
+
+        Texture texture = TextureLoader.load(name, config);
+        entry = new Entry(texture, estimateSize(texture, config));
+        entry.references = 1;
+
+        entries.put(key, entry);
+        byTexture.put(texture, entry);
+        usage += entry.size;
+
+        evict();
+
+        return texture;
+    }
+
+
+    /**
+     * Releases a texture obtained from {@link #acquire(String, TextureConfig)}.
+     *
+     * @param texture The texture to release
+     */
+    public void release(Texture texture)
+    {
+        Entry entry = byTexture.get(texture);
+
+        if (entry == null || entry.references == 0)
+        {
+            throw new IllegalArgumentException("Texture is not acquired from this cache");
+        }
+
+        entry.references--;
+
+        if (entry.references == 0)
+        {
+            evict();
+        }
+    }
+
+
+    /**
+     * Deletes least recently used unreferenced textures until usage fits the budget.
+     */
+    private void evict()
+    {
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (usage > budget && iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+
+            if (entry.references == 0)
+            {
+                iterator.remove();
+                remove(entry);
+            }
+        }
+    }
+
+
+    /**
+     * Deletes every unreferenced texture regardless of the budget.
+     */
+    public void trim()
+    {
+        Iterator<Entry> iterator = entries.values().iterator();
+
+        while (iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+
+            if (entry.references == 0)
+            {
+                iterator.remove();
+                remove(entry);
+            }
+        }
+    }
+
+
+    /**
+     * Deletes every cached texture, including referenced ones.
+     */
+    public void delete()
+    {
+        for (Entry entry : entries.values())
+        {
+            entry.texture.delete();
+        }
+
+        entries.clear();
+        byTexture.clear();
+        usage = 0;
+    }
+
+
+    /**
+     * Deletes the texture of an entry already removed from {@link #entries}.
+     */
+    private void remove(Entry entry)
+    {
+        byTexture.remove(entry.texture);
+        usage -= entry.size;
+        entry.texture.delete();
+    }
+
+
+    /**
+     * Estimates the memory a texture occupies on the GPU.
+     *
+     * @param texture The texture
+     * @param config  The configuration it was loaded with
+     * 
+     * @return Estimated size in bytes
+     */
+    static long estimateSize(Texture texture, TextureConfig config)
+    {
+        /* Compressed textures are sized exactly from their uploaded levels */
+        if (CompressedImage.isCompressedFormat(texture.getInternalFormat()))
+        {
+            long size = 0;
+            int w = texture.getWidth(), h = texture.getHeight();
+
+            for (int level = 0; level < texture.getLevels(); level++)
+            {
+                size += CompressedImage.levelSize(texture.getInternalFormat(), w, h);
+                w = Math.max(1, w / 2);
+                h = Math.max(1, h / 2);
+            }
+
+            return size;
+        }
+
+        long size = (long) texture.getWidth() * texture.getHeight() * bytesPerTexel(texture.getInternalFormat());
+
+
+        /* A full mip chain adds a third of the base level */
+        return config.hasMipmaps() ? size * 4 / 3 : size;
+    }
+
+
+    /**
+     * Returns the bytes per texel of an uncompressed internal format.
+     * Three channel formats are assumed to be padded to four by the driver.
+     */
+    private static int bytesPerTexel(int internalFormat)
+    {
+        switch (internalFormat)
+        {
+            case GL_R8:
+                return 1;
+
+            case GL_RG8: case GL_R16F:
+                return 2;
+
+            case GL_RGBA16F: case GL_RGB16F:
+                return 8;
+
+            case GL_RGBA32F: case GL_RGB32F:
+                return 16;
+
+            case GL_RGB8: case GL_RGBA8: case GL_SRGB8: case GL_SRGB8_ALPHA8:
+            default:
+                return 4;
+        }
+    }
+
+
+    /**
+     * Sets the memory budget, evicting textures if usage exceeds it.
+     *
+     * @param budget Memory budget in bytes
+     */
+    public void setBudget(long budget)
+    {
+        if (budget < 0)
+        {
+            throw new IllegalArgumentException("Invalid texture cache budget: " + budget);
+        }
+
+        this.budget = budget;
+        evict();
+    }
+
+
+    /**
+     * @return Memory budget in bytes
+     */
+    public long getBudget()
+    {
+        return budget;
+    }
+
+
+    /**
+     * @return Estimated memory of all cached textures in bytes
+     */
+    public long getUsage()
+    {
+        return usage;
+    }
+
+
+    /**
+     * @return Number of cached textures
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+
+    /**
+     * @return Number of acquisitions served from the cache
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+
+    /**
+     * @return Number of acquisitions that had to load the texture
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+
+    /**
+     * A cached texture and its reference count.
+     */
+    private static final class Entry
+    {
+        private final Texture texture;
+        private final long size;
+        private int references;
+
+        private Entry(Texture texture, long size)
+        {
+            this.texture = texture;
+            this.size = size;
+        }
+    }
+}
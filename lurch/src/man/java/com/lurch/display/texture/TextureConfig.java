@@ -103,6 +103,19 @@ public class TextureConfig
     );
 
 
+    /**
+     * Precompressed textures (DDS/KTX2) with mip chains stored in the file.
+     * Internal format, format and channels come from the file, so they are left as 0.
+     */
+    public static final TextureConfig COMPRESSED = new TextureConfig
+    (
+        false,
+        GL_REPEAT, GL_REPEAT,
+        GL_LINEAR_MIPMAP_LINEAR, GL_LINEAR,
+        GL_TEXTURE_2D, 0, 0, 0
+    );
+
+
     // --- Constructors --- //
 
 
@@ -137,6 +150,16 @@ public class TextureConfig
             glGenerateMipmap(target);
         }
 
+        applyParameters();
+    }
+
+
+    /**
+     * Applies filtering and wrapping without generating mipmaps,
+     * for textures whose mip levels were uploaded explicitly.
+     */
+    public void applyParameters()
+    {
         glTexParameteri(target, GL_TEXTURE_MIN_FILTER, minFilter);
         glTexParameteri(target, GL_TEXTURE_MAG_FILTER, magFilter);
         glTexParameteri(target, GL_TEXTURE_WRAP_S, wrapS);
@@ -147,6 +170,17 @@ public class TextureConfig
     // --- Methods --- //
 
 
+    /**
+     * Returns whether mipmaps are generated for the texture.
+     * 
+     * @return true if mipmaps are generated, false otherwise
+     */
+    public boolean hasMipmaps()
+    {
+        return mipmaps;
+    }
+
+
     /**
      * Generates a cache key for the texture configuration.
      * 
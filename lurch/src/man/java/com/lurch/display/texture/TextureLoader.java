@@ -1,22 +1,74 @@
 package com.lurch.display.texture;
 
+import static org.lwjgl.opengl.GL11.GL_UNPACK_ALIGNMENT;
+import static org.lwjgl.opengl.GL11.glPixelStorei;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_INVALIDATE_BUFFER_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
-import static org.lwjgl.stb.STBImage.*;
+import com.lurch.resource.ResourcePack;
+import com.lurch.resource.Resources;
 
 /**
  * Utility class for loading image files into OpenGL textures using STBImage.
+ *
+ * Textures can be loaded synchronously with {@link #load(String)}, or in the
+ * background with {@link #loadAsync(String)}. Background loads decode on a
+ * worker pool and are uploaded through a pixel buffer object by
+ * {@link #processUploads(long)}, which must be called once per frame on the GL thread.
+ *
+ * Names are resolved through {@link Resources}, so textures come from a mounted
+ * resource pack when one provides them and from mapped loose files otherwise.
  */
 public class TextureLoader 
 {
     /**
-     * Base folder for texture assets.
-     * Adjust this path to match your resource layout.
+     * Folder of texture assets, relative to the resource root or a pack.
+     */
+    private static final String TEXTURE_FOLDER = "texture/";
+
+
+    /**
+     * Decoded images waiting to be uploaded on the GL thread.
+     */
+    private static final Queue<PendingUpload> uploads = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Worker pool decoding images, created on first use.
+     */
+    private static ExecutorService decoders;
+
+
+    /**
+     * Set while {@link #shutdown()} runs, so queued decodes are dropped instead of started.
      */
-    private static final String TEXTURE_FOLDER = "lurch/src/main/resource/texture/";
+    private static volatile boolean stopping;
+
+
+    /**
+     * Pixel unpack buffer reused (orphaned) for every background upload.
+     */
+    private static int pbo;
+
+
+    /**
+     * 1x1 opaque white texture handed out while textures are loading.
+     */
+    private static Texture placeholder;
 
 
     /**
@@ -36,65 +88,539 @@ public class TextureLoader
      * Loads an image from file and creates an OpenGL texture object.
      *
      * @param name            File name of the texture
-     * @param target          Texture target 
-     * @param internalFormat  OpenGL internal format
-     * @param format          Format of pixel data
+     * @param config          Texture configuration
      * 
      * @return A fully initialized {@link Texture}
      */
     public static Texture load(String name, TextureConfig config)
     {
-        /* Texture file path */
-        final String path = TEXTURE_FOLDER + name;
+        /* Textures in a mounted pack may be baked and need no decoding */
+        ResourcePack pack = Resources.find(TEXTURE_FOLDER + name);
+        if (pack != null)
+        {
+            return load(pack, name, config);
+        }
+
+        return load(Resources.read(TEXTURE_FOLDER + name), name, config);
+    }
+
+
+    /**
+     * Decodes an image file already in memory and creates an OpenGL texture object.
+     *
+     * @param data   Contents of the image file
+     * @param name   File name of the texture, selects the decoder
+     * @param config Texture configuration
+     * 
+     * @return A fully initialized {@link Texture}
+     */
+    private static Texture load(ByteBuffer data, String name, TextureConfig config)
+    {
+        /* Precompressed containers bypass STB */
+        if (CompressedImage.isCompressedFile(name))
+        {
+            return upload(CompressedImage.read(data, name), config);
+        }
+
+
+        /* Decode image (CPU-side) */
+        Image image = Image.decode(data, name, config.channels);
+
+
+        /* Create texture and upload image data to GPU */
+        try
+        {
+            Texture texture = new Texture(image.getWidth(), image.getHeight(), config.target, config.internalFormat, config.format);
+
+            texture.bind();                         // Bind texture
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);  // Rows are tightly packed
+            texture.upload(image.getPixels());      // Upload texture data
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 4);  // Restore default alignment
+            config.apply();                         // Apply texture parameters
+            texture.unbind();                       // Unbind texture
+
+            return texture;
+        }
+        finally
+        {
+            /* Free the loaded image data (CPU-side) */
+            image.free();
+        }
+    }
+
+
+    /**
+     * Uploads a compressed image and its mip chain.
+     * The internal format comes from the image; the configuration supplies
+     * target, filtering and wrapping. Mipmaps are never generated.
+     *
+     * @param image  Compressed image
+     * @param config Texture configuration
+     * 
+     * @return A fully initialized {@link Texture}
+     */
+    public static Texture upload(CompressedImage image, TextureConfig config)
+    {
+        if (config.hasMipmaps())
+        {
+            throw new IllegalArgumentException("Mipmaps cannot be generated for compressed textures");
+        }
+
+        Texture texture = new Texture(image.getWidth(), image.getHeight(), config.target, image.getInternalFormat(), 0);
+
+        texture.bind();
+
+        int w = image.getWidth(), h = image.getHeight();
+        for (int level = 0; level < image.getLevelCount(); level++)
+        {
+            texture.uploadCompressed(level, w, h, image.getLevel(level));
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+        }
+
 
+        /* Limit sampling to the levels present so partial chains stay complete */
+        glTexParameteri(config.target, GL_TEXTURE_MAX_LEVEL, image.getLevelCount() - 1);
 
-        /* Texture dimensions */
-        final int width, height;
+        config.apply();
+        texture.unbind();
 
+        return texture;
+    }
 
-        /* Texture file data */
-        final ByteBuffer data;
 
+    /**
+     * Loads a texture from a resource pack.
+     * Pixels baked by the lurch-bake tool are uploaded straight from the mapped
+     * pack, and when the configuration uses mipmaps the baked mip chain replaces
+     * glGenerateMipmap. Baked pixels are RGBA and are repacked for configurations
+     * with fewer channels. Files stored as they are are decoded from the mapping.
+     *
+     * @param pack   Resource pack containing the texture
+     * @param name   File name of the texture, as passed to {@link #load(String, TextureConfig)}
+     * @param config Texture configuration
+     * 
+     * @return A fully initialized {@link Texture}
+     */
+    public static Texture load(ResourcePack pack, String name, TextureConfig config)
+    {
+        ResourcePack.Entry entry = pack.getEntry(TEXTURE_FOLDER + name);
 
-        try (MemoryStack stack = MemoryStack.stackPush()) 
+        if (entry == null)
         {
-            /* Prepare buffers to receive image dimensions and channel count */
-            IntBuffer w = stack.mallocInt(1);
-            IntBuffer h = stack.mallocInt(1);
-            IntBuffer channels = stack.mallocInt(1);
-            
+            throw new IllegalArgumentException("Texture '" + name + "' not found in " + pack.getPath());
+        }
 
-            /* Load image data using STBImage */
-            data = stbi_load(path, w, h, channels, config.channels);
 
+        /* Files stored as they are, including precompressed containers */
+        if (entry.kind == ResourcePack.RAW)
+        {
+            return load(pack.getData(entry), name, config);
+        }
+
+        if (entry.kind != ResourcePack.TEXTURE)
+        {
+            throw new IllegalArgumentException("Resource '" + entry.name + "' is not a baked texture");
+        }
 
-            /* Check for failure */
-            if (data == null) 
+        if (config.channels < 1 || config.channels > 4)
+        {
+            throw new IllegalArgumentException("Invalid channel count for '" + name + "': " + config.channels);
+        }
+
+
+        /* Upload the base level, and the baked mip chain if the configuration samples it */
+        ByteBuffer data = pack.getData(entry);
+        int levels = config.hasMipmaps() ? entry.levels : 1;
+
+        /* Baked pixels are RGBA, configurations with fewer channels get them repacked */
+        ByteBuffer repacked = config.channels != 4 ? MemoryUtil.memAlloc(entry.width * entry.height * config.channels) : null;
+
+        Texture texture = new Texture(entry.width, entry.height, config.target, config.internalFormat, config.format);
+
+        texture.bind();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        try
+        {
+            int w = entry.width, h = entry.height, offset = 0;
+            for (int level = 0; level < levels; level++)
             {
-                throw new IllegalArgumentException("Failed to load image '" + path + "': " + stbi_failure_reason());
+                int size = w * h * 4;
+                ByteBuffer pixels = data.slice(offset, size);
+
+                if (repacked != null)
+                {
+                    pixels = repack(pixels, repacked, w * h, config.channels);
+                }
+
+                texture.upload(level, w, h, pixels);
+
+                offset += size;
+                w = Math.max(1, w / 2);
+                h = Math.max(1, h / 2);
             }
+        }
+        finally
+        {
+            MemoryUtil.memFree(repacked);
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        }
+
 
+        /* Packs baked without mips fall back to generating them */
+        if (levels > 1)
+        {
+            glTexParameteri(config.target, GL_TEXTURE_MAX_LEVEL, levels - 1);
+            config.applyParameters();
+        }
+        else
+        {
+            config.apply();
+        }
 
-            /* Retrieve width and height from buffers */
-            width = w.get();
-            height = h.get();
+        texture.unbind();
 
+        return texture;
+    }
 
-            /* Create texture and upload image data to GPU */
-            Texture texture = new Texture(width, height, config.target, config.internalFormat, config.format);
 
-            
-            texture.bind();         // Bind texture
-            texture.upload(data);   // Upload texture data
-            config.apply();         // Apply texture parameters
-            texture.unbind();       // Unbind texture
+    /**
+     * Copies the first channels of each RGBA pixel into a tightly packed buffer.
+     *
+     * @param rgba     RGBA8 pixels
+     * @param out      Buffer large enough for the result
+     * @param pixels   Number of pixels
+     * @param channels Channels to keep, 1 to 3
+     *
+     * @return A view of the packed pixels in {@code out}
+     */
+    private static ByteBuffer repack(ByteBuffer rgba, ByteBuffer out, int pixels, int channels)
+    {
+        for (int i = 0; i < pixels; i++)
+        {
+            for (int c = 0; c < channels; c++)
+            {
+                out.put(i * channels + c, rgba.get(i * 4 + c));
+            }
+        }
 
-            
-            /* Free the loaded image data (CPU-side) */
-            stbi_image_free(data);
+        return out.slice(0, pixels * channels);
+    }
 
 
-            return texture;
+    /**
+     * Starts loading a texture in the background with default parameters.
+     *
+     * @param name File name of the texture
+     * 
+     * @return Handle returning a placeholder until the texture is ready
+     */
+    public static AsyncTexture loadAsync(String name)
+    {
+        return loadAsync(name, TextureConfig.DEFAULT);
+    }
+
+
+    /**
+     * Starts loading a texture in the background.
+     * The image is decoded on a worker thread and uploaded by a later call to
+     * {@link #processUploads(long)}. Must be called on the GL thread.
+     *
+     * @param name   File name of the texture
+     * @param config Texture configuration
+     * 
+     * @return Handle returning a placeholder until the texture is ready
+     */
+    public static AsyncTexture loadAsync(String name, TextureConfig config)
+    {
+        final String resource = TEXTURE_FOLDER + name;
+        final AsyncTexture handle = new AsyncTexture(getPlaceholder());
+
+        decoders().execute(() ->
+        {
+            if (stopping)
+            {
+                handle.fail(new IllegalStateException("Texture loader shut down"));
+                return;
+            }
+
+            try
+            {
+                ResourcePack pack = Resources.find(resource);
+
+                if (pack != null && pack.getEntry(resource).kind == ResourcePack.TEXTURE)
+                {
+                    /* Baked pixels have nothing to decode */
+                    uploads.add(new PendingUpload(handle, null, null, pack, name, config));
+                }
+                else if (CompressedImage.isCompressedFile(name))
+                {
+                    uploads.add(new PendingUpload(handle, null, CompressedImage.read(Resources.read(resource), name), null, name, config));
+                }
+                else
+                {
+                    Image image = Image.decode(Resources.read(resource), name, config.channels);
+                    uploads.add(new PendingUpload(handle, image, null, null, name, config));
+                }
+            }
+            catch (RuntimeException e)
+            {
+                handle.fail(e);
+            }
+        });
+
+        return handle;
+    }
+
+
+    /**
+     * Uploads decoded background textures until the time budget is spent.
+     * At least one texture is uploaded per call when any are pending, so
+     * loading always makes progress. Must be called on the GL thread.
+     *
+     * @param budgetNanos Time budget in nanoseconds
+     * 
+     * @return Number of textures uploaded
+     */
+    public static int processUploads(long budgetNanos)
+    {
+        final long start = System.nanoTime();
+        int uploaded = 0;
+
+        PendingUpload pending;
+        while ((pending = uploads.poll()) != null)
+        {
+            try
+            {
+                if (pending.pack != null)
+                {
+                    pending.handle.complete(load(pending.pack, pending.name, pending.config));
+                }
+                else if (pending.compressed != null)
+                {
+                    pending.handle.complete(upload(pending.compressed, pending.config));
+                }
+                else
+                {
+                    pending.handle.complete(upload(pending.image, pending.config));
+                }
+            }
+            catch (RuntimeException e)
+            {
+                pending.handle.fail(e);
+            }
+            finally
+            {
+                pending.free();
+            }
+
+            uploaded++;
+
+            if (System.nanoTime() - start >= budgetNanos)
+            {
+                break;
+            }
+        }
+
+        return uploaded;
+    }
+
+
+    /**
+     * Returns whether background loads are still being decoded or uploaded.
+     *
+     * @return true if {@link #processUploads(long)} has work pending
+     */
+    public static boolean hasPendingUploads()
+    {
+        return !uploads.isEmpty();
+    }
+
+
+    /**
+     * Uploads a decoded image through the pixel unpack buffer.
+     *
+     * @return the created texture
+     */
+    private static Texture upload(Image image, TextureConfig config)
+    {
+        Texture texture = new Texture(image.getWidth(), image.getHeight(), config.target, config.internalFormat, config.format);
+        ByteBuffer pixels = image.getPixels();
+        long size = pixels.remaining();
+
+        if (pbo == 0)
+        {
+            pbo = glGenBuffers();
+        }
+
+
+        /* Orphan the previous storage and copy the pixels into mapped memory */
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pbo);
+        glBufferData(GL_PIXEL_UNPACK_BUFFER, size, GL_STREAM_DRAW);
+
+        ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, size, GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+        if (mapped == null)
+        {
+            glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+            texture.delete();
+            throw new RuntimeException("Failed to map pixel unpack buffer");
+        }
+
+        MemoryUtil.memCopy(pixels, mapped);
+        glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+
+
+        /* Source the texture from the buffer, the driver copies asynchronously */
+        texture.bind();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        texture.upload(0L);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        config.apply();
+        texture.unbind();
+
+        return texture;
+    }
+
+
+    /**
+     * Returns the placeholder texture, creating it on first use.
+     * Must be called on the GL thread.
+     *
+     * @return 1x1 opaque white texture
+     */
+    public static Texture getPlaceholder()
+    {
+        if (placeholder == null)
+        {
+            ByteBuffer white = MemoryUtil.memAlloc(4);
+            white.put(0, (byte) 0xFF).put(1, (byte) 0xFF).put(2, (byte) 0xFF).put(3, (byte) 0xFF);
+
+            TextureConfig config = TextureConfig.PIXEL_ART;
+            placeholder = new Texture(1, 1, config.target, config.internalFormat, config.format);
+            placeholder.bind();
+            placeholder.upload(white);
+            config.apply();
+            placeholder.unbind();
+
+            MemoryUtil.memFree(white);
+        }
+
+        return placeholder;
+    }
+
+
+    /**
+     * Returns the decoder pool, creating it on first use.
+     */
+    private static synchronized ExecutorService decoders()
+    {
+        if (decoders == null)
+        {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+            decoders = Executors.newFixedThreadPool(threads, runnable ->
+            {
+                Thread thread = new Thread(runnable, "lurch-texture-decoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return decoders;
+    }
+
+
+    /**
+     * Stops the decoder pool and releases the upload buffer, the placeholder
+     * and any decoded images that were never uploaded. Must be called on the GL thread.
+     * Queued loads fail without decoding; decodes already running get a second
+     * to finish so their images are freed here rather than leaked.
+     */
+    public static void shutdown()
+    {
+        ExecutorService pool;
+
+        synchronized (TextureLoader.class)
+        {
+            pool = decoders;
+            decoders = null;
+        }
+
+        if (pool != null)
+        {
+            stopping = true;
+            pool.shutdown();
+
+            try
+            {
+                if (!pool.awaitTermination(1, TimeUnit.SECONDS))
+                {
+                    System.err.println("Texture decodes still running at shutdown");
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                stopping = false;
+            }
+        }
+
+        PendingUpload pending;
+        while ((pending = uploads.poll()) != null)
+        {
+            pending.free();
+            pending.handle.fail(new IllegalStateException("Texture loader shut down"));
+        }
+
+        if (pbo != 0)
+        {
+            glDeleteBuffers(pbo);
+            pbo = 0;
+        }
+
+        if (placeholder != null)
+        {
+            placeholder.delete();
+            placeholder = null;
+        }
+    }
+
+
+    /**
+     * A decoded image, compressed image or baked pack texture waiting for upload,
+     * exactly one of which is set.
+     */
+    private static final class PendingUpload
+    {
+        private final AsyncTexture handle;
+        private final Image image;
+        private final CompressedImage compressed;
+        private final ResourcePack pack;
+        private final String name;
+        private final TextureConfig config;
+
+        private PendingUpload(AsyncTexture handle, Image image, CompressedImage compressed, ResourcePack pack,
+                              String name, TextureConfig config)
+        {
+            this.handle = handle;
+            this.image = image;
+            this.compressed = compressed;
+            this.pack = pack;
+            this.name = name;
+            this.config = config;
+        }
+
+        private void free()
+        {
+            if (image != null)
+            {
+                image.free();
+            }
         }
     }
 }
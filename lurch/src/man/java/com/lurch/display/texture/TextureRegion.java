@@ -0,0 +1,151 @@
+package com.lurch.display.texture;
+
+/**
+ * A rectangular area of a texture, described by its texture coordinates.
+ */
+public class TextureRegion
+{
+    /**
+     * The texture the region belongs to.
+     */
+    private final Texture texture;
+
+
+    /**
+     * Left texture coordinate.
+     */
+    private final float u0;
+
+
+    /**
+     * Texture coordinate of the region's first row.
+     */
+    private final float v0;
+
+
+    /**
+     * Right texture coordinate.
+     */
+    private final float u1;
+
+
+    /**
+     * Texture coordinate past the region's last row.
+     */
+    private final float v1;
+
+
+    /**
+     * Region width in pixels.
+     */
+    private final int width;
+
+
+    /**
+     * Region height in pixels.
+     */
+    private final int height;
+
+
+    /**
+     * Creates a region covering a whole texture.
+     *
+     * @param texture the texture
+     */
+    public TextureRegion(Texture texture)
+    {
+        this(texture, 0, 0, texture.getWidth(), texture.getHeight());
+    }
+
+
+    /**
+     * Creates a region from a pixel rectangle of a texture.
+     *
+     * @param texture the texture
+     * @param x       the left edge in pixels
+     * @param y       the first row in pixels
+     * @param width   the width in pixels
+     * @param height  the height in pixels
+     */
+    public TextureRegion(Texture texture, int x, int y, int width, int height)
+    {
+        /* Validate input */
+        if (texture == null || width <= 0 || height <= 0 || x < 0 || y < 0 ||
+            x + width > texture.getWidth() || y + height > texture.getHeight())
+        {
+            throw new IllegalArgumentException("Invalid texture region");
+        }
+
+        this.texture = texture;
+        this.width = width;
+        this.height = height;
+
+        u0 = (float) x / texture.getWidth();
+        v0 = (float) y / texture.getHeight();
+        u1 = (float) (x + width) / texture.getWidth();
+        v1 = (float) (y + height) / texture.getHeight();
+    }
+
+
+    /**
+     * @return The texture the region belongs to
+     */
+    public Texture getTexture()
+    {
+        return texture;
+    }
+
+
+    /**
+     * @return Left texture coordinate
+     */
+    public float getU0()
+    {
+        return u0;
+    }
+
+
+    /**
+     * @return Texture coordinate of the region's first row
+     */
+    public float getV0()
+    {
+        return v0;
+    }
+
+
+    /**
+     * @return Right texture coordinate
+     */
+    public float getU1()
+    {
+        return u1;
+    }
+
+
+    /**
+     * @return Texture coordinate past the region's last row
+     */
+    public float getV1()
+    {
+        return v1;
+    }
+
+
+    /**
+     * @return Region width in pixels
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+
+    /**
+     * @return Region height in pixels
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+}
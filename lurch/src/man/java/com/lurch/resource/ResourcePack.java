@@ -0,0 +1,290 @@
+package com.lurch.resource;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A memory-mapped resource pack written by the lurch-bake tool.
+ *
+ * The whole file is mapped once and the index is read into a hash map, so
+ * lookups are O(1) and entry data is handed out as slices of the mapping
+ * without copying. Entry names mirror the resource tree, e.g. "texture/grass.png"
+ * or "shader/sprite/sprite.vert".
+ */
+public class ResourcePack
+{
+    /**
+     * Pack magic number, "LPAK" in little endian.
+     */
+    public static final int MAGIC = 0x4B41504C;
+
+
+    /**
+     * Supported pack format version.
+     */
+    public static final int VERSION = 1;
+
+
+    /**
+     * Entry kind: file stored as is.
+     */
+    public static final int RAW = 0;
+
+
+    /**
+     * Entry kind: RGBA8 pixels, mip levels back to back, base level first.
+     */
+    public static final int TEXTURE = 1;
+
+
+    /**
+     * Entry kind: UTF-8 shader source.
+     */
+    public static final int SHADER = 2;
+
+
+    /**
+     * Path the pack was opened from, used in error messages.
+     */
+    private final String path;
+
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer data;
+
+
+    /**
+     * Entries by name.
+     */
+    private final Map<String, Entry> entries;
+
+
+    /**
+     * Memory-maps a pack and reads its index.
+     *
+     * @param path the pack file
+     * @throws IllegalArgumentException if the file cannot be read or is not a valid pack
+     */
+    public ResourcePack(String path)
+    {
+        this.path = path;
+
+
+        /* Map the whole file */
+        data = Resources.map(path);
+
+
+        /* Check the header */
+        if (data.limit() < 12 || data.getInt(0) != MAGIC)
+        {
+            throw new IllegalArgumentException("Not a resource pack: " + path);
+        }
+
+        if (data.getInt(4) != VERSION)
+        {
+            throw new IllegalArgumentException("Unsupported resource pack version " + data.getInt(4) + ": " + path);
+        }
+
+
+        /* Read the index */
+        int count = data.getInt(8);
+        if (count < 0)
+        {
+            throw new IllegalArgumentException("Corrupt resource pack index: " + path);
+        }
+
+        Map<String, Entry> index = new HashMap<>(count * 2);
+
+        try
+        {
+            ByteBuffer reader = data.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(12);
+
+            for (int i = 0; i < count; i++)
+            {
+                byte[] name = new byte[reader.getShort() & 0xFFFF];
+                reader.get(name);
+
+                Entry entry = new Entry
+                (
+                    new String(name, StandardCharsets.UTF_8),
+                    reader.get(),
+                    reader.getLong(), reader.getLong(), reader.getLong(),
+                    reader.getInt(), reader.getInt(), reader.getInt(), reader.getInt()
+                );
+
+                if (entry.offset < 0 || entry.length < 0 || entry.offset > data.limit() - entry.length)
+                {
+                    throw new IllegalArgumentException("Resource pack entry '" + entry.name + "' is out of bounds: " + path);
+                }
+
+                index.put(entry.name, entry);
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IllegalArgumentException("Corrupt resource pack index: " + path, e);
+        }
+
+        entries = index;
+    }
+
+
+    /**
+     * Checks whether the pack contains an entry.
+     *
+     * @param name the entry name
+     * @return true if the entry exists
+     */
+    public boolean contains(String name)
+    {
+        return entries.containsKey(name);
+    }
+
+
+    /**
+     * Looks up an entry.
+     *
+     * @param name the entry name
+     * @return the entry, or null if the pack does not contain it
+     */
+    public Entry getEntry(String name)
+    {
+        return entries.get(name);
+    }
+
+
+    /**
+     * Returns the data of an entry as a slice of the mapped file.
+     *
+     * @param name the entry name
+     * @return a read-only little-endian view of the entry data
+     * @throws IllegalArgumentException if the pack does not contain the entry
+     */
+    public ByteBuffer getData(String name)
+    {
+        Entry entry = entries.get(name);
+
+        if (entry == null)
+        {
+            throw new IllegalArgumentException("Resource '" + name + "' not found in " + path);
+        }
+
+        return getData(entry);
+    }
+
+
+    /**
+     * Returns the data of an entry as a slice of the mapped file.
+     *
+     * @param entry an entry of this pack
+     * @return a read-only little-endian view of the entry data
+     */
+    public ByteBuffer getData(Entry entry)
+    {
+        return data.slice((int) entry.offset, (int) entry.length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * Returns the names of all entries.
+     *
+     * @return an unmodifiable view of the entry names
+     */
+    public Set<String> getNames()
+    {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+
+    /**
+     * Returns the path the pack was opened from.
+     *
+     * @return the pack path
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+
+    /**
+     * An index entry describing one resource in the pack.
+     */
+    public static final class Entry
+    {
+        /**
+         * Entry name, '/' separated.
+         */
+        public final String name;
+
+
+        /**
+         * Entry kind: {@link #RAW}, {@link #TEXTURE} or {@link #SHADER}.
+         */
+        public final int kind;
+
+
+        /**
+         * Byte offset of the data within the pack.
+         */
+        public final long offset;
+
+
+        /**
+         * Length of the data in bytes.
+         */
+        public final long length;
+
+
+        /**
+         * Hash of the source file's content, truncated SHA-256.
+         */
+        public final long hash;
+
+
+        /**
+         * Base level width in pixels, 0 for non-textures.
+         */
+        public final int width;
+
+
+        /**
+         * Base level height in pixels, 0 for non-textures.
+         */
+        public final int height;
+
+
+        /**
+         * Number of mip levels stored, 0 for non-textures.
+         */
+        public final int levels;
+
+
+        /**
+         * GL internal format of the stored pixels, 0 for non-textures.
+         */
+        public final int format;
+
+
+        private Entry(String name, int kind, long offset, long length, long hash, int width, int height, int levels, int format)
+        {
+            this.name = name;
+            this.kind = kind;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+            this.width = width;
+            this.height = height;
+            this.levels = levels;
+            this.format = format;
+        }
+    }
+}
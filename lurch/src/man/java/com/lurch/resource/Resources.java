@@ -0,0 +1,143 @@
+package com.lurch.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Resolves resource names against mounted packs, then the resource folder.
+ *
+ * Names are relative to the resource root, e.g. "texture/grass.png" or
+ * "shader/sprite/sprite.vert". Mounted packs are searched first, most recently
+ * mounted first, so a game can ship one pack and still override single files
+ * with another. Loose files are memory-mapped as well, so every resource is
+ * read with one open and no copies. Lookups are safe from any thread.
+ */
+public final class Resources
+{
+    /**
+     * Base folder of loose resources.
+     * Adjust this path to match your resource layout.
+     */
+    private static final String RESOURCE_FOLDER = "lurch/src/main/resource/";
+
+
+    /**
+     * Mounted packs, most recently mounted first.
+     */
+    private static final List<ResourcePack> packs = new CopyOnWriteArrayList<>();
+
+
+    private Resources()
+    {
+    }
+
+
+    /**
+     * Mounts a pack, giving its entries priority over earlier packs and loose files.
+     *
+     * @param pack the pack to mount
+     */
+    public static void mount(ResourcePack pack)
+    {
+        if (pack == null)
+        {
+            throw new IllegalArgumentException("Resource pack cannot be null");
+        }
+
+        packs.add(0, pack);
+    }
+
+
+    /**
+     * Unmounts a pack. Buffers already handed out remain valid.
+     *
+     * @param pack the pack to unmount
+     */
+    public static void unmount(ResourcePack pack)
+    {
+        packs.remove(pack);
+    }
+
+
+    /**
+     * Finds the mounted pack providing a resource.
+     *
+     * @param name the resource name
+     * @return the pack, or null if the resource is not in any mounted pack
+     */
+    public static ResourcePack find(String name)
+    {
+        for (ResourcePack pack : packs)
+        {
+            if (pack.contains(name))
+            {
+                return pack;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Reads a resource from the mounted packs or, failing that, the resource folder.
+     *
+     * @param name the resource name
+     * @return a read-only view of the resource bytes
+     * @throws IllegalArgumentException if the resource cannot be found or read
+     */
+    public static ByteBuffer read(String name)
+    {
+        ResourcePack pack = find(name);
+
+        if (pack != null)
+        {
+            return pack.getData(name);
+        }
+
+        return map(RESOURCE_FOLDER + name);
+    }
+
+
+    /**
+     * Returns the path of a loose resource file, whether or not it exists.
+     *
+     * @param name the resource name
+     * @return the file path within the resource folder
+     */
+    public static Path path(String name)
+    {
+        return Path.of(RESOURCE_FOLDER + name);
+    }
+
+
+    /**
+     * Memory-maps a whole file.
+     *
+     * @param path the file path
+     * @return a read-only little-endian view of the file
+     * @throws IllegalArgumentException if the file cannot be found or read
+     */
+    public static ByteBuffer map(String path)
+    {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        catch (NoSuchFileException e)
+        {
+            throw new IllegalArgumentException("Resource not found: " + path, e);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException("Failed to read resource '" + path + "'", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+#version 330 core
+
+in vec2 v_texCoord;
+in vec4 v_tint;
+out vec4 FragColor;
+
+uniform sampler2D u_texture;
+
+void main()
+{
+    FragColor = texture(u_texture, v_texCoord) * v_tint;
+}
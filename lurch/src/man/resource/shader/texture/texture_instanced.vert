@@ -0,0 +1,20 @@
+#version 330 core
+
+layout (location = 0) in vec3 a_position;
+layout (location = 1) in vec2 a_texCoord;
+
+// Per-instance attributes, a mat4 occupies locations 2 through 5
+layout (location = 2) in mat4 a_model;
+layout (location = 6) in vec4 a_tint;
+
+uniform mat4 u_projection;
+
+out vec2 v_texCoord;
+out vec4 v_tint;
+
+void main()
+{
+    gl_Position = u_projection * a_model * vec4(a_position, 1.0);
+    v_texCoord = a_texCoord;
+    v_tint = a_tint;
+}